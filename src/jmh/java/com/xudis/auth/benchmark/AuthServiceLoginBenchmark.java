@@ -0,0 +1,49 @@
+package com.xudis.auth.benchmark;
+
+import com.xudis.auth.dto.AuthResponse;
+import com.xudis.auth.dto.LoginRequest;
+import com.xudis.auth.service.AuthService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full {@link AuthService#login} cost: BCrypt verification, access token signing and refresh token write.
+ * Sample mode is included so the p99 of a single login is reported next to throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class AuthServiceLoginBenchmark {
+
+    @Param({"4", "10", "12"})
+    private int bcryptStrength;
+
+    private AuthService authService;
+    private LoginRequest loginRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        authService = BenchmarkFixtures.authService(
+                BenchmarkFixtures.jwtTokenService(new InMemoryRedisTemplate()), bcryptStrength);
+        loginRequest = new LoginRequest(BenchmarkFixtures.USERNAME, BenchmarkFixtures.PASSWORD);
+    }
+
+    @Benchmark
+    public AuthResponse login() {
+        return authService.login(loginRequest);
+    }
+}
@@ -0,0 +1,112 @@
+package com.xudis.auth.benchmark;
+
+import com.xudis.auth.service.AuthAuditLog;
+import com.xudis.auth.service.AuthService;
+import com.xudis.auth.service.JwtTokenService;
+import com.xudis.auth.service.SigningKeyRing;
+import com.xudis.auth.service.TokenBlacklistFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Wires the services under benchmark by hand, mirroring application.yml, without starting a Spring context.
+ */
+final class BenchmarkFixtures {
+
+    static final String ISSUER = "http://localhost:9000";
+    static final long TOKEN_VALIDITY_SECONDS = 3600;
+    static final long REFRESH_TOKEN_VALIDITY_SECONDS = 86400;
+
+    static final String USERNAME = "bench-user";
+    static final String PASSWORD = "bench-password";
+
+    private BenchmarkFixtures() {
+    }
+
+    static JwtTokenService jwtTokenService(RedisTemplate<String, String> redisTemplate) {
+        return jwtTokenService(redisTemplate, signingKeyRing());
+    }
+
+    static JwtTokenService jwtTokenService(RedisTemplate<String, String> redisTemplate, SigningKeyRing signingKeyRing) {
+        TokenBlacklistFilter tokenBlacklistFilter = new TokenBlacklistFilter(redisTemplate);
+        ReflectionTestUtils.setField(tokenBlacklistFilter, "expectedInsertions", 100_000L);
+        ReflectionTestUtils.setField(tokenBlacklistFilter, "falsePositiveProbability", 0.001);
+        tokenBlacklistFilter.rebuild();
+
+        JwtTokenService jwtTokenService = new JwtTokenService(redisTemplate, tokenBlacklistFilter, signingKeyRing,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtTokenService, "issuer", ISSUER);
+        ReflectionTestUtils.setField(jwtTokenService, "tokenValiditySeconds", TOKEN_VALIDITY_SECONDS);
+        ReflectionTestUtils.setField(jwtTokenService, "refreshTokenValiditySeconds", REFRESH_TOKEN_VALIDITY_SECONDS);
+        ReflectionTestUtils.setField(jwtTokenService, "introspectionQueueCapacity", 100);
+        ReflectionTestUtils.setField(jwtTokenService, "introspectionMaxBatchSize", 1000);
+        jwtTokenService.init();
+        return jwtTokenService;
+    }
+
+    static SigningKeyRing signingKeyRing() {
+        return signingKeyRing("RS256");
+    }
+
+    static SigningKeyRing signingKeyRing(String signingAlgorithm) {
+        SigningKeyRing signingKeyRing = new SigningKeyRing(
+                InMemorySigningKeyRepository.create(), TransactionOperations.withoutTransaction());
+        ReflectionTestUtils.setField(signingKeyRing, "signingAlgorithm", signingAlgorithm);
+        ReflectionTestUtils.setField(signingKeyRing, "algorithms", List.of(signingAlgorithm));
+        ReflectionTestUtils.setField(signingKeyRing, "rotationInterval", Duration.ofDays(7));
+        ReflectionTestUtils.setField(signingKeyRing, "gracePeriod", Duration.ofDays(1));
+        ReflectionTestUtils.setField(signingKeyRing, "minReloadInterval", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(signingKeyRing, "refreshIntervalMs", 60000L);
+        ReflectionTestUtils.setField(signingKeyRing, "metadataMaxAge", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(signingKeyRing, "encryptionKey", "");
+        signingKeyRing.init();
+        return signingKeyRing;
+    }
+
+    static AuthService authService(JwtTokenService jwtTokenService, int bcryptStrength) {
+        return authService(jwtTokenService, new BCryptPasswordEncoder(bcryptStrength), Duration.ZERO);
+    }
+
+    // lookupLatency is slept on every user lookup, standing in for the database round trip
+    static AuthService authService(JwtTokenService jwtTokenService, PasswordEncoder passwordEncoder,
+                                   Duration lookupLatency) {
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(
+                User.withUsername(USERNAME)
+                        .password(passwordEncoder.encode(PASSWORD))
+                        .authorities("ROLE_USER", "ROLE_ADMIN")
+                        .build()
+        );
+        UserDetailsService userDetailsService = lookupLatency.isZero() ? users : username -> {
+            try {
+                Thread.sleep(lookupLatency.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return users.loadUserByUsername(username);
+        };
+
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider(userDetailsService);
+        authenticationProvider.setPasswordEncoder(passwordEncoder);
+
+        // Audit log left disabled: its writer needs the database. No client repository or throttle: logins carry
+        // no clientId.
+        AuthService authService = new AuthService(
+                new ProviderManager(authenticationProvider), jwtTokenService, userDetailsService,
+                new SimpleMeterRegistry(), new AuthAuditLog(null, new SimpleMeterRegistry()), null, passwordEncoder,
+                null);
+        ReflectionTestUtils.setField(authService, "tokenValiditySeconds", TOKEN_VALIDITY_SECONDS);
+        return authService;
+    }
+}
@@ -0,0 +1,40 @@
+package com.xudis.auth.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks once per thread count (-Djmh.threads=1,4,8) with the GC profiler attached,
+ * so every result carries gc.alloc.rate.norm (bytes allocated per operation).
+ * <p>
+ * {@link TokenLookupBenchmark} needs MySQL and seeds up to 50M rows, so it only runs when the include pattern
+ * names it or BENCHMARK_MYSQL_URL is set.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+        boolean tokenLookup = include.contains("TokenLookup") || System.getenv("BENCHMARK_MYSQL_URL") != null;
+
+        for (String threads : System.getProperty("jmh.threads", "1,4,8").split(",")) {
+            int threadCount = Integer.parseInt(threads.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threadCount)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-result-" + threadCount + "t.json");
+            if (!tokenLookup) {
+                options.exclude(TokenLookupBenchmark.class.getSimpleName());
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
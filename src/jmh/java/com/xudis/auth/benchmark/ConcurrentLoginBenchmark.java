@@ -0,0 +1,102 @@
+package com.xudis.auth.benchmark;
+
+import com.xudis.auth.dto.LoginRequest;
+import com.xudis.auth.security.BoundedPasswordEncoder;
+import com.xudis.auth.service.AuthService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent logins with a simulated blocking user lookup, served either by a platform pool capped like
+ * Tomcat's default 200 worker threads or by one virtual thread per request. BCrypt runs on the bounded
+ * password encoder pool in both cases, as in the application.
+ * <p>
+ * The virtual variant needs a Java 21 runtime and fails its setup on older JVMs. Run with one JMH thread:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.include=ConcurrentLogin -Djmh.threads=1}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConcurrentLoginBenchmark {
+
+    private static final int CONCURRENT_LOGINS = 1000;
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"5"})
+    private int lookupLatencyMillis;
+
+    private ExecutorService requestExecutor;
+    private BoundedPasswordEncoder passwordEncoder;
+    private AuthService authService;
+    private LoginRequest loginRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        requestExecutor = "virtual".equals(threads)
+                ? newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_THREADS, new CustomizableThreadFactory("request-"));
+        passwordEncoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4),
+                Runtime.getRuntime().availableProcessors(), CONCURRENT_LOGINS, Duration.ofSeconds(1),
+                new SimpleMeterRegistry());
+        authService = BenchmarkFixtures.authService(
+                BenchmarkFixtures.jwtTokenService(new InMemoryRedisTemplate()),
+                passwordEncoder, Duration.ofMillis(lookupLatencyMillis));
+        loginRequest = new LoginRequest(BenchmarkFixtures.USERNAME, BenchmarkFixtures.PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        requestExecutor.shutdownNow();
+        passwordEncoder.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_LOGINS)
+    public int login() throws Exception {
+        List<Future<?>> logins = new ArrayList<>(CONCURRENT_LOGINS);
+        for (int i = 0; i < CONCURRENT_LOGINS; i++) {
+            logins.add(requestExecutor.submit(() -> authService.login(loginRequest)));
+        }
+        for (Future<?> login : logins) {
+            login.get();
+        }
+        return logins.size();
+    }
+
+    // Looked up reflectively so the benchmarks still compile for Java 17
+    private static ExecutorService newVirtualThreadPerTaskExecutor() throws ReflectiveOperationException {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads need a Java 21 runtime", e);
+        }
+    }
+}
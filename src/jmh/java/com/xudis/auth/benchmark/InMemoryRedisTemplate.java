@@ -0,0 +1,197 @@
+package com.xudis.auth.benchmark;
+
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanCursor;
+import org.springframework.data.redis.core.ScanIteration;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection-less stand-in for {@link RedisTemplate} so benchmarks measure the token path, not the network.
+ * Only the operations used by the services under test are implemented.
+ */
+public class InMemoryRedisTemplate extends RedisTemplate<String, String> {
+
+    private final Map<String, Entry> store = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, Double>> sortedSets = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+
+    private final ValueOperations<String, String> valueOperations = valueOperationsProxy();
+    private final ZSetOperations<String, String> zSetOperations = zSetOperationsProxy();
+    private final HashOperations<String, Object, Object> hashOperations = hashOperationsProxy();
+
+    @Override
+    public ValueOperations<String, String> opsForValue() {
+        return valueOperations;
+    }
+
+    @Override
+    public ZSetOperations<String, String> opsForZSet() {
+        return zSetOperations;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <HK, HV> HashOperations<String, HK, HV> opsForHash() {
+        return (HashOperations<String, HK, HV>) hashOperations;
+    }
+
+    // Runs the callback directly; results are not collected
+    @Override
+    public List<Object> executePipelined(SessionCallback<?> session) {
+        session.execute(this);
+        return List.of();
+    }
+
+    // Sorted sets and hashes do not expire here; values do through set(..., timeout)
+    @Override
+    public Boolean expire(String key, long timeout, TimeUnit unit) {
+        return true;
+    }
+
+    @Override
+    public Boolean hasKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Boolean delete(String key) {
+        boolean deleted = store.remove(key) != null;
+        return hashes.remove(key) != null || deleted;
+    }
+
+    @Override
+    public Long delete(Collection<String> keys) {
+        return keys.stream().filter(this::delete).count();
+    }
+
+    @Override
+    public Cursor<String> scan(ScanOptions options) {
+        String pattern = options.getPattern();
+        String prefix = pattern == null ? "" : pattern.substring(0, pattern.length() - (pattern.endsWith("*") ? 1 : 0));
+        List<String> keys = store.keySet().stream()
+                .filter(key -> key.startsWith(prefix) && get(key) != null)
+                .toList();
+        return new ScanCursor<String>(options) {
+            @Override
+            protected ScanIteration<String> doScan(CursorId cursorId, ScanOptions scanOptions) {
+                return new ScanIteration<>(CursorId.initial(), keys);
+            }
+        }.open();
+    }
+
+    @Override
+    public Long convertAndSend(String channel, Object message) {
+        return 0L;
+    }
+
+    private String get(String key) {
+        Entry entry = store.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            store.remove(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    private void set(String key, String value, long timeout, TimeUnit unit) {
+        long expiresAt = timeout > 0 ? System.currentTimeMillis() + unit.toMillis(timeout) : Long.MAX_VALUE;
+        store.put(key, new Entry(value, expiresAt));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ValueOperations<String, String> valueOperationsProxy() {
+        return (ValueOperations<String, String>) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{ValueOperations.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "get" -> get((String) args[0]);
+                    case "multiGet" -> ((Collection<?>) args[0]).stream().map(key -> get((String) key)).toList();
+                    case "set" -> {
+                        if (args.length == 2) {
+                            set((String) args[0], (String) args[1], 0, TimeUnit.SECONDS);
+                        } else if (args.length == 3 && args[2] instanceof Duration timeout) {
+                            set((String) args[0], (String) args[1], timeout.toMillis(), TimeUnit.MILLISECONDS);
+                        } else if (args.length == 4) {
+                            set((String) args[0], (String) args[1], (Long) args[2], (TimeUnit) args[3]);
+                        } else {
+                            throw new UnsupportedOperationException(method.toString());
+                        }
+                        yield null;
+                    }
+                    case "getOperations" -> this;
+                    default -> throw new UnsupportedOperationException(method.toString());
+                });
+    }
+
+    private Map<String, Double> sortedSet(String key) {
+        return sortedSets.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ZSetOperations<String, String> zSetOperationsProxy() {
+        return (ZSetOperations<String, String>) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{ZSetOperations.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "add" -> sortedSet((String) args[0]).put((String) args[1], (Double) args[2]) == null;
+                    case "remove" -> Arrays.stream((Object[]) args[1])
+                            .filter(member -> sortedSet((String) args[0]).remove(member) != null)
+                            .count();
+                    case "removeRangeByScore" -> {
+                        Map<String, Double> members = sortedSet((String) args[0]);
+                        int before = members.size();
+                        members.values().removeIf(score -> score >= (Double) args[1] && score <= (Double) args[2]);
+                        yield (long) (before - members.size());
+                    }
+                    case "range" -> new LinkedHashSet<>(sortedSet((String) args[0]).keySet());
+                    case "getOperations" -> this;
+                    default -> throw new UnsupportedOperationException(method.toString());
+                });
+    }
+
+    private Map<Object, Object> hash(String key) {
+        return hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private HashOperations<String, Object, Object> hashOperationsProxy() {
+        return (HashOperations<String, Object, Object>) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{HashOperations.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "putAll" -> {
+                        hash((String) args[0]).putAll((Map<?, ?>) args[1]);
+                        yield null;
+                    }
+                    case "get" -> hashes.getOrDefault((String) args[0], Map.of()).get(args[1]);
+                    case "multiGet" -> ((Collection<?>) args[1]).stream()
+                            .map(field -> hashes.getOrDefault((String) args[0], Map.of()).get(field))
+                            .toList();
+                    case "getOperations" -> this;
+                    default -> throw new UnsupportedOperationException(method.toString());
+                });
+    }
+
+    private record Entry(String value, long expiresAt) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.xudis.auth.benchmark;
+
+import com.xudis.auth.entity.SigningKey;
+import com.xudis.auth.repository.SigningKeyRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map-backed {@link SigningKeyRepository} covering the queries {@code SigningKeyRing} issues.
+ */
+final class InMemorySigningKeyRepository {
+
+    private InMemorySigningKeyRepository() {
+    }
+
+    static SigningKeyRepository create() {
+        Map<String, SigningKey> keys = new ConcurrentHashMap<>();
+        return (SigningKeyRepository) Proxy.newProxyInstance(
+                SigningKeyRepository.class.getClassLoader(),
+                new Class<?>[]{SigningKeyRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findPublished" -> keys.values().stream()
+                            .filter(key -> key.getRetiredAt() == null || key.getRetiredAt().isAfter((Instant) args[0]))
+                            .toList();
+                    case "save" -> {
+                        SigningKey key = (SigningKey) args[0];
+                        keys.put(key.getKid(), key);
+                        yield key;
+                    }
+                    case "retire" -> {
+                        SigningKey key = keys.get((String) args[0]);
+                        if (key == null || key.getRetiredAt() != null) {
+                            yield 0;
+                        }
+                        key.setRetiredAt((Instant) args[1]);
+                        yield 1;
+                    }
+                    case "retireActive" -> {
+                        int retired = 0;
+                        for (SigningKey key : keys.values()) {
+                            if (key.getAlgorithm().equals(args[0]) && key.getRetiredAt() == null) {
+                                key.setRetiredAt((Instant) args[1]);
+                                retired++;
+                            }
+                        }
+                        yield retired;
+                    }
+                    default -> throw new UnsupportedOperationException(method.toString());
+                });
+    }
+}
@@ -0,0 +1,103 @@
+package com.xudis.auth.benchmark;
+
+import com.xudis.auth.dto.TokenIntrospection;
+import com.xudis.auth.service.JwtTokenService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenServiceBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"RS256", "ES256", "EdDSA"})
+    private String signingAlgorithm;
+
+    private JwtTokenService jwtTokenService;
+    private Authentication authentication;
+    private String accessToken;
+    private String blacklistedToken;
+    private List<String> batch;
+
+    @Setup
+    public void setUp() throws Exception {
+        jwtTokenService = BenchmarkFixtures.jwtTokenService(
+                new InMemoryRedisTemplate(), BenchmarkFixtures.signingKeyRing(signingAlgorithm));
+        authentication = UsernamePasswordAuthenticationToken.authenticated(
+                BenchmarkFixtures.USERNAME, null, AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+
+        accessToken = jwtTokenService.generateAccessToken(authentication);
+        blacklistedToken = jwtTokenService.generateAccessToken(authentication);
+        jwtTokenService.blacklistToken(blacklistedToken);
+
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(jwtTokenService.generateAccessToken(authentication));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        jwtTokenService.shutdown();
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtTokenService.generateAccessToken(authentication);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtTokenService.validateToken(accessToken);
+    }
+
+    @Benchmark
+    public boolean validateBlacklistedToken() {
+        return jwtTokenService.validateToken(blacklistedToken);
+    }
+
+    // Per token, as POST /api/auth/introspect/batch runs it
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<TokenIntrospection> introspectBatch() {
+        return jwtTokenService.introspectAll(batch);
+    }
+
+    // Per token, the same batch checked one token at a time
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void validateBatchSequentially(Blackhole blackhole) {
+        for (String token : batch) {
+            blackhole.consume(jwtTokenService.validateToken(token));
+        }
+    }
+
+    @Benchmark
+    public boolean isTokenBlacklisted() {
+        return jwtTokenService.isTokenBlacklisted(accessToken);
+    }
+}
@@ -0,0 +1,140 @@
+package com.xudis.auth.benchmark;
+
+import com.xudis.auth.security.SessionAttributeSerializer;
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository;
+import org.springframework.security.web.savedrequest.DefaultSavedRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spring Session hash values of a browser session in the authorization code flow (security context, saved
+ * /oauth2/authorize request, CSRF token and the session's own fields), with JDK serialization (the Spring Session
+ * default) and with {@link SessionAttributeSerializer}. {@code readSession} is the deserialization done on every
+ * request; the stored size is printed at setup:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.include=SessionSerialization -Djmh.threads=1}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionSerializationBenchmark {
+
+    @Param({"jdk", "compact"})
+    private String serializer;
+
+    private RedisSerializer<Object> redisSerializer;
+    private Map<String, Object> session;
+    private byte[][] stored;
+
+    @Setup
+    public void setUp() {
+        ClassLoader classLoader = SessionSerializationBenchmark.class.getClassLoader();
+        redisSerializer = "jdk".equals(serializer)
+                ? new JdkSerializationRedisSerializer(classLoader)
+                : new SessionAttributeSerializer(classLoader);
+        session = session();
+
+        stored = new byte[session.size()][];
+        int i = 0;
+        int total = 0;
+        for (Map.Entry<String, Object> entry : session.entrySet()) {
+            stored[i] = redisSerializer.serialize(entry.getValue());
+            System.out.printf("%n%s %-90s %6d bytes", serializer, entry.getKey(), stored[i].length);
+            total += stored[i++].length;
+        }
+        System.out.printf("%n%s session values total %d bytes%n", serializer, total);
+    }
+
+    @Benchmark
+    public void readSession(Blackhole blackhole) {
+        for (byte[] value : stored) {
+            blackhole.consume(redisSerializer.deserialize(value));
+        }
+    }
+
+    @Benchmark
+    public void writeSession(Blackhole blackhole) {
+        for (Object value : session.values()) {
+            blackhole.consume(redisSerializer.serialize(value));
+        }
+    }
+
+    // Written on every request
+    @Benchmark
+    public byte[] writeLastAccessedTime() {
+        return redisSerializer.serialize(System.currentTimeMillis());
+    }
+
+    private static Map<String, Object> session() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/oauth2/authorize");
+        request.setServerName("auth.example.com");
+        request.setScheme("https");
+        request.setServerPort(443);
+        request.setSecure(true);
+        request.setRemoteAddr("203.0.113.10");
+        String query = "response_type=code&client_id=demo-client&scope=openid%20profile"
+                + "&redirect_uri=https%3A%2F%2Fapp.example.com%2Flogin%2Foauth2%2Fcode%2Fxudis-auth"
+                + "&state=Xr9pQm2bTz7kL0sVf3nWy8dH1cAe5uJo&code_challenge=E9Melhoa2OwvFrEMTJguCHaoeK1t8URWbuGJSstw-cM"
+                + "&code_challenge_method=S256&nonce=n-0S6_WzA2Mj";
+        request.setQueryString(query);
+        for (String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            request.addParameter(parts[0], parts[1]);
+        }
+        request.addHeader("Host", "auth.example.com");
+        request.addHeader("User-Agent",
+                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0 Safari/537.36");
+        request.addHeader("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,*/*;q=0.8");
+        request.addHeader("Accept-Language", "zh-CN,zh;q=0.9,en;q=0.8");
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        request.addHeader("Referer", "https://app.example.com/");
+        request.setCookies(new Cookie("SESSION", UUID.randomUUID().toString()));
+        request.addPreferredLocale(Locale.SIMPLIFIED_CHINESE);
+
+        UsernamePasswordAuthenticationToken authentication = UsernamePasswordAuthenticationToken.authenticated(
+                new User(BenchmarkFixtures.USERNAME, "", AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN")),
+                null, AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+        authentication.setDetails(new WebAuthenticationDetails("203.0.113.10", UUID.randomUUID().toString()));
+
+        long now = System.currentTimeMillis();
+        Map<String, Object> session = new LinkedHashMap<>();
+        session.put("creationTime", now);
+        session.put("lastAccessedTime", now);
+        session.put("maxInactiveInterval", 1800);
+        session.put("sessionAttr:" + HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+                new SecurityContextImpl(authentication));
+        session.put("sessionAttr:SPRING_SECURITY_SAVED_REQUEST", new DefaultSavedRequest(request));
+        session.put("sessionAttr:" + HttpSessionCsrfTokenRepository.class.getName() + ".CSRF_TOKEN",
+                new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", UUID.randomUUID().toString()));
+        return session;
+    }
+}
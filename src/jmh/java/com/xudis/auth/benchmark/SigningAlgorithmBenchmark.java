@@ -0,0 +1,90 @@
+package com.xudis.auth.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.Ed25519Signer;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.util.Base64URL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw JWS sign and verify cost per algorithm, isolated from claims building and caching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SigningAlgorithmBenchmark {
+
+    @Param({"RS256", "ES256", "EdDSA"})
+    private String algorithm;
+
+    private JWSSigner signer;
+    private JWSVerifier verifier;
+    private JWSHeader header;
+    private byte[] signingInput;
+    private Base64URL signature;
+
+    @Setup
+    public void setUp() throws JOSEException {
+        JWSAlgorithm jwsAlgorithm = JWSAlgorithm.parse(algorithm);
+        if (JWSAlgorithm.RS256.equals(jwsAlgorithm)) {
+            RSAKey key = new RSAKeyGenerator(2048).generate();
+            signer = new RSASSASigner(key);
+            verifier = new RSASSAVerifier(key);
+        } else if (JWSAlgorithm.ES256.equals(jwsAlgorithm)) {
+            ECKey key = new ECKeyGenerator(Curve.P_256).generate();
+            signer = new ECDSASigner(key);
+            verifier = new ECDSAVerifier(key);
+        } else {
+            OctetKeyPair key = new OctetKeyPairGenerator(Curve.Ed25519).generate();
+            signer = new Ed25519Signer(key);
+            verifier = new Ed25519Verifier(key.toPublicJWK());
+        }
+
+        header = new JWSHeader.Builder(jwsAlgorithm).keyID("bench").build();
+        // Typical access token: header + ~200 byte claims segment
+        signingInput = (header.toBase64URL() + "." + Base64URL.encode("x".repeat(200)))
+                .getBytes(StandardCharsets.US_ASCII);
+        signature = signer.sign(header, signingInput);
+    }
+
+    @Benchmark
+    public Base64URL sign() throws JOSEException {
+        return signer.sign(header, signingInput);
+    }
+
+    @Benchmark
+    public boolean verify() throws JOSEException {
+        return verifier.verify(header, signingInput, signature);
+    }
+}
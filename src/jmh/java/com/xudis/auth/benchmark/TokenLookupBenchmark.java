@@ -0,0 +1,179 @@
+package com.xudis.auth.benchmark;
+
+import com.xudis.auth.security.HashedJdbcOAuth2AuthorizationService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access and refresh token lookups against a MySQL oauth2_authorization table of 1M, 10M and 50M rows, through
+ * the stock {@link JdbcOAuth2AuthorizationService} (TEXT column scan) and
+ * {@link HashedJdbcOAuth2AuthorizationService} (indexed SHA-256 digest).
+ * <p>
+ * Needs a running MySQL (docker-compose). Each size gets its own schema, {@code auth_token_lookup_<rows>}, created
+ * with V2 and V5 and seeded on first use; later runs reuse it. 50M rows take roughly 50 GB of disk and a long
+ * first run.
+ * Connection settings come from BENCHMARK_MYSQL_URL, BENCHMARK_MYSQL_USERNAME and BENCHMARK_MYSQL_PASSWORD.
+ * Not part of a plain {@code mvn -Pjmh test-compile exec:exec}; run it by name, or set BENCHMARK_MYSQL_URL:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.include=TokenLookup -Djmh.threads=1}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class TokenLookupBenchmark {
+
+    private static final String CLIENT_ID = "benchmark-client";
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    // Typical lengths: a signed JWT access token and an opaque refresh token
+    private static final String ACCESS_TOKEN_PADDING = "a".repeat(600);
+    private static final String REFRESH_TOKEN_PADDING = "r".repeat(100);
+
+    private static final String INSERT_SQL = "INSERT INTO oauth2_authorization (id, registered_client_id, "
+            + "principal_name, authorization_grant_type, attributes, access_token_value, access_token_issued_at, "
+            + "access_token_expires_at, access_token_metadata, access_token_type, refresh_token_value, "
+            + "refresh_token_issued_at, refresh_token_expires_at, refresh_token_metadata) "
+            + "VALUES (?, ?, ?, ?, '{}', ?, ?, ?, '{}', 'Bearer', ?, ?, ?, '{}')";
+
+    @Param({"1000000", "10000000", "50000000"})
+    private int rows;
+
+    @Param({"jdbc", "hashed-jdbc"})
+    private String store;
+
+    private HikariDataSource dataSource;
+    private OAuth2AuthorizationService authorizationService;
+
+    @Setup
+    public void setUp() throws SQLException {
+        String url = env("BENCHMARK_MYSQL_URL", "jdbc:mysql://127.0.0.1:3306/?useSSL=false"
+                + "&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true");
+        String username = env("BENCHMARK_MYSQL_USERNAME", "root");
+        String password = env("BENCHMARK_MYSQL_PASSWORD", "1qaz!QAZ");
+        String schema = "auth_token_lookup_" + rows;
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE IF NOT EXISTS " + schema);
+        }
+
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setCatalog(schema);
+        dataSource.setMaximumPoolSize(16);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        seed(jdbcTemplate);
+
+        RegisteredClient client = RegisteredClient.withId(CLIENT_ID)
+                .clientId(CLIENT_ID)
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .redirectUri("http://127.0.0.1/callback")
+                .build();
+        InMemoryRegisteredClientRepository clients = new InMemoryRegisteredClientRepository(client);
+        authorizationService = "hashed-jdbc".equals(store)
+                ? new HashedJdbcOAuth2AuthorizationService(jdbcTemplate, clients)
+                : new JdbcOAuth2AuthorizationService(jdbcTemplate, clients);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public OAuth2Authorization findByAccessToken() {
+        int row = ThreadLocalRandom.current().nextInt(rows);
+        return Objects.requireNonNull(
+                authorizationService.findByToken(accessToken(row), OAuth2TokenType.ACCESS_TOKEN));
+    }
+
+    @Benchmark
+    public OAuth2Authorization findByRefreshToken() {
+        int row = ThreadLocalRandom.current().nextInt(rows);
+        return Objects.requireNonNull(
+                authorizationService.findByToken(refreshToken(row), OAuth2TokenType.REFRESH_TOKEN));
+    }
+
+    // Creates the tables on first use and tops the table up to the requested row count
+    private void seed(JdbcTemplate jdbcTemplate) {
+        Integer tables = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables "
+                + "WHERE table_schema = DATABASE() AND table_name = 'oauth2_authorization'", Integer.class);
+        if (tables == null || tables == 0) {
+            new ResourceDatabasePopulator(
+                    new ClassPathResource("db/migration/V2__Create_oauth2_tables.sql"),
+                    new ClassPathResource("db/migration/V5__Add_oauth2_authorization_token_hashes.sql"))
+                    .execute(dataSource);
+        }
+
+        Integer existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM oauth2_authorization", Integer.class);
+        int next = existing != null ? existing : 0;
+        Timestamp issuedAt = Timestamp.from(Instant.now());
+        Timestamp expiresAt = Timestamp.from(Instant.now().plusSeconds(TimeUnit.DAYS.toSeconds(365)));
+        while (next < rows) {
+            int end = Math.min(next + SEED_BATCH_SIZE, rows);
+            List<Object[]> batch = new ArrayList<>(end - next);
+            for (int row = next; row < end; row++) {
+                batch.add(new Object[]{"bench-" + row, CLIENT_ID, "user" + row,
+                        AuthorizationGrantType.AUTHORIZATION_CODE.getValue(), accessToken(row), issuedAt, expiresAt,
+                        refreshToken(row), issuedAt, expiresAt});
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+            next = end;
+            if (next % 1_000_000 == 0) {
+                System.out.println("Seeded " + next + " / " + rows + " authorizations");
+            }
+        }
+    }
+
+    private static String accessToken(int row) {
+        return "at" + row + "." + ACCESS_TOKEN_PADDING;
+    }
+
+    private static String refreshToken(int row) {
+        return "rt" + row + "." + REFRESH_TOKEN_PADDING;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,59 @@
+package com.xudis.auth.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Latencies of one scenario, in nanoseconds. Each worker owns its recorders, so recording takes no locks; the
+ * workers' recorders are merged once the run is over.
+ */
+final class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long nanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+    }
+
+    void error() {
+        errors++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long errors() {
+        return errors;
+    }
+
+    static LatencyRecorder merge(List<LatencyRecorder> recorders) {
+        LatencyRecorder merged = new LatencyRecorder();
+        merged.latencies = new long[Math.max(1, recorders.stream().mapToInt(LatencyRecorder::count).sum())];
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.latencies, 0, merged.latencies, merged.count, recorder.count);
+            merged.count += recorder.count;
+            merged.errors += recorder.errors;
+        }
+        Arrays.sort(merged.latencies, 0, merged.count);
+        return merged;
+    }
+
+    // Nearest-rank percentile of a merged (sorted) recorder, 0 if nothing was recorded
+    long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return latencies[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    long max() {
+        return count == 0 ? 0 : latencies[count - 1];
+    }
+}
@@ -0,0 +1,249 @@
+package com.xudis.auth.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * One simulated client: its own HTTP connection, cookie jar and token pair. Not thread-safe; each load test
+ * worker owns one.
+ */
+final class LoadTestClient {
+
+    enum Scenario {
+        LOGIN("login"),
+        REFRESH("refresh"),
+        LOGOUT("logout"),
+        CLIENT_CREDENTIALS("client_credentials"),
+        AUTHORIZATION_CODE("authorization_code"),
+        JWKS("jwks");
+
+        private final String key;
+
+        Scenario(String key) {
+            this.key = key;
+        }
+
+        String key() {
+            return key;
+        }
+
+        static Scenario fromKey(String key) {
+            for (Scenario scenario : values()) {
+                if (scenario.key.equals(key)) {
+                    return scenario;
+                }
+            }
+            throw new IllegalArgumentException("Unknown scenario: " + key);
+        }
+    }
+
+    static final String CLIENT_ID = "loadtest-client";
+    static final String CLIENT_SECRET = "loadtest-secret";
+    static final String REDIRECT_URI = "http://127.0.0.1/loadtest/callback";
+    static final String PASSWORD = "loadtest-password";
+
+    private static final Pattern CSRF_INPUT = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+    private static final Pattern CODE_PARAMETER = Pattern.compile("[?&]code=([^&]+)");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final int users;
+    private final ObjectMapper objectMapper;
+    private final CookieManager cookieManager = new CookieManager();
+    private final HttpClient httpClient;
+    private final SecureRandom random = new SecureRandom();
+    private final String clientAuthorization = "Basic " + Base64.getEncoder()
+            .encodeToString((CLIENT_ID + ":" + CLIENT_SECRET).getBytes(StandardCharsets.UTF_8));
+
+    private String accessToken;
+    private String refreshToken;
+
+    LoadTestClient(String baseUrl, int users, ObjectMapper objectMapper) {
+        this.baseUrl = baseUrl;
+        this.users = users;
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .cookieHandler(cookieManager)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+    }
+
+    static String username(int index) {
+        return "loadtest-user-" + index;
+    }
+
+    // Refresh and logout need a token pair; without one the client logs in instead
+    Scenario effective(Scenario scenario) {
+        if ((scenario == Scenario.REFRESH || scenario == Scenario.LOGOUT) && refreshToken == null) {
+            return Scenario.LOGIN;
+        }
+        return scenario;
+    }
+
+    /**
+     * Runs one operation of the scenario; returns false if the server answered with an unexpected status.
+     */
+    boolean execute(Scenario scenario) throws IOException, InterruptedException {
+        return switch (scenario) {
+            case LOGIN -> login();
+            case REFRESH -> refresh();
+            case LOGOUT -> logout();
+            case CLIENT_CREDENTIALS -> clientCredentials();
+            case AUTHORIZATION_CODE -> authorizationCode();
+            case JWKS -> send(request("/oauth2/jwks").GET().build()).statusCode() == 200;
+        };
+    }
+
+    private boolean login() throws IOException, InterruptedException {
+        Map<String, String> body = Map.of(
+                "username", username(ThreadLocalRandom.current().nextInt(users)),
+                "password", PASSWORD);
+        return storeTokens(send(json("/api/auth/login", body)));
+    }
+
+    private boolean refresh() throws IOException, InterruptedException {
+        return storeTokens(send(json("/api/auth/refresh", Map.of("refreshToken", refreshToken))));
+    }
+
+    private boolean logout() throws IOException, InterruptedException {
+        HttpRequest request = request("/api/auth/logout")
+                .header("Authorization", "Bearer " + accessToken)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        accessToken = null;
+        refreshToken = null;
+        return send(request).statusCode() == 200;
+    }
+
+    private boolean clientCredentials() throws IOException, InterruptedException {
+        HttpRequest request = form("/oauth2/token", Map.of("grant_type", "client_credentials", "scope", "read"))
+                .header("Authorization", clientAuthorization)
+                .build();
+        return send(request).statusCode() == 200;
+    }
+
+    // Form login, authorization request with PKCE, code exchange: what a browser-based client costs end to end
+    private boolean authorizationCode() throws IOException, InterruptedException {
+        cookieManager.getCookieStore().removeAll();
+
+        HttpResponse<String> loginPage = send(request("/login").GET().build());
+        Matcher csrf = CSRF_INPUT.matcher(loginPage.body());
+        if (loginPage.statusCode() != 200 || !csrf.find()) {
+            return false;
+        }
+        Map<String, String> credentials = new LinkedHashMap<>();
+        credentials.put("username", username(ThreadLocalRandom.current().nextInt(users)));
+        credentials.put("password", PASSWORD);
+        credentials.put("_csrf", csrf.group(1));
+        HttpResponse<String> login = send(form("/login", credentials).build());
+        if (login.statusCode() != 302 || login.headers().firstValue("Location").orElse("").contains("error")) {
+            return false;
+        }
+
+        String codeVerifier = randomUrlSafe(32);
+        Map<String, String> authorizeParameters = new LinkedHashMap<>();
+        authorizeParameters.put("response_type", "code");
+        authorizeParameters.put("client_id", CLIENT_ID);
+        authorizeParameters.put("redirect_uri", REDIRECT_URI);
+        authorizeParameters.put("scope", "read");
+        authorizeParameters.put("state", randomUrlSafe(8));
+        authorizeParameters.put("code_challenge", codeChallenge(codeVerifier));
+        authorizeParameters.put("code_challenge_method", "S256");
+        HttpResponse<String> authorize = send(request("/oauth2/authorize?" + encode(authorizeParameters))
+                .GET().build());
+        String location = authorize.headers().firstValue("Location").orElse("");
+        Matcher code = CODE_PARAMETER.matcher(location);
+        if (authorize.statusCode() != 302 || !location.startsWith(REDIRECT_URI) || !code.find()) {
+            return false;
+        }
+
+        Map<String, String> tokenParameters = new LinkedHashMap<>();
+        tokenParameters.put("grant_type", "authorization_code");
+        tokenParameters.put("code", URLDecoder.decode(code.group(1), StandardCharsets.UTF_8));
+        tokenParameters.put("redirect_uri", REDIRECT_URI);
+        tokenParameters.put("code_verifier", codeVerifier);
+        HttpRequest token = form("/oauth2/token", tokenParameters)
+                .header("Authorization", clientAuthorization)
+                .build();
+        return send(token).statusCode() == 200;
+    }
+
+    private boolean storeTokens(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() != 200) {
+            accessToken = null;
+            refreshToken = null;
+            return false;
+        }
+        JsonNode body = objectMapper.readTree(response.body());
+        accessToken = body.path("accessToken").asText(null);
+        refreshToken = body.path("refreshToken").asText(null);
+        return accessToken != null;
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private HttpRequest json(String path, Map<String, String> body) throws IOException {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private HttpRequest.Builder form(String path, Map<String, String> parameters) {
+        return request(path)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(encode(parameters)));
+    }
+
+    private static String encode(Map<String, String> parameters) {
+        return parameters.entrySet().stream()
+                .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+    }
+
+    private String randomUrlSafe(int bytes) {
+        byte[] value = new byte[bytes];
+        random.nextBytes(value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+    }
+
+    private static String codeChallenge(String codeVerifier) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(codeVerifier.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.xudis.auth.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.xudis.auth.AuthCenterApplication;
+import com.xudis.auth.loadtest.LoadTestClient.Scenario;
+import com.xudis.auth.support.EmbeddedRedisInitializer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Offline load test: starts the application on a random port with H2 and an in-process Redis (the
+ * {@code embedded} profile), seeds users and a client, then drives a weighted mix of scenarios over HTTP from
+ * {@code -Dloadtest.concurrency} closed-loop workers and reports throughput and p50/p99/p999 latency.
+ * <p>
+ * {@code mvn -Ploadtest test-compile exec:exec -Dloadtest.concurrency=32 -Dloadtest.mix=login=1,jwks=1}
+ * <p>
+ * H2 and jedis-mock are much slower than MySQL and Redis for some operations and faster for others, so compare
+ * runs of this harness with each other (before and after a change), not with production numbers.
+ */
+public final class LoadTestRunner {
+
+    private static final String DEFAULT_MIX =
+            "login=20,refresh=20,logout=10,client_credentials=20,authorization_code=10,jwks=20";
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("loadtest.concurrency", 16);
+        Duration warmup = DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "10s"));
+        Duration duration = DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "30s"));
+        int users = Integer.getInteger("loadtest.users", 200);
+        Map<Scenario, Integer> mix = parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX));
+
+        // Command-line arguments, so they win over application.yml
+        List<String> arguments = new ArrayList<>(List.of(args));
+        arguments.add("--server.port=0");
+        // Every worker logs in as one of a few hundred users; the throttle would reject most of it
+        arguments.add("--auth.login-throttle.enabled=false");
+        arguments.add("--logging.level.root=WARN");
+        arguments.add("--logging.level.com.xudis.auth=WARN");
+        arguments.add("--logging.level.org.springframework.security=WARN");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(AuthCenterApplication.class)
+                .profiles("embedded")
+                .initializers(new EmbeddedRedisInitializer())
+                .run(arguments.toArray(new String[0]));
+        int exitCode = 0;
+        try {
+            seed(context, users);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            Map<Scenario, LatencyRecorder> results =
+                    run("http://127.0.0.1:" + port, concurrency, warmup, duration, users, mix);
+            report(results, concurrency, duration);
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            SpringApplication.exit(context);
+        }
+        System.exit(exitCode);
+    }
+
+    private static Map<Scenario, Integer> parseMix(String mix) {
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected scenario=weight, got: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Scenario.fromKey(parts[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("No scenario with a positive weight in: " + mix);
+        }
+        return weights;
+    }
+
+    // Users share one password so seeding costs a single BCrypt hash
+    private static void seed(ConfigurableApplicationContext context, int users) {
+        PasswordEncoder passwordEncoder = context.getBean(PasswordEncoder.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        String passwordHash = passwordEncoder.encode(LoadTestClient.PASSWORD);
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            rows.add(new Object[]{LoadTestClient.username(i), passwordHash, now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, password, enabled, version, created_at, updated_at) "
+                + "VALUES (?, ?, TRUE, 0, ?, ?)", rows);
+        jdbcTemplate.update("INSERT INTO authorities (user_id, authority) "
+                + "SELECT id, 'ROLE_USER' FROM users WHERE username LIKE 'loadtest-user-%'");
+
+        RegisteredClient client = RegisteredClient.withId(UUID.randomUUID().toString())
+                .clientId(LoadTestClient.CLIENT_ID)
+                .clientSecret(passwordEncoder.encode(LoadTestClient.CLIENT_SECRET))
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .redirectUri(LoadTestClient.REDIRECT_URI)
+                .scope("read")
+                .clientSettings(ClientSettings.builder()
+                        .requireAuthorizationConsent(false)
+                        .requireProofKey(true)
+                        .build())
+                .build();
+        context.getBean(RegisteredClientRepository.class).save(client);
+    }
+
+    private static Map<Scenario, LatencyRecorder> run(String baseUrl, int concurrency, Duration warmup,
+                                                      Duration duration, int users, Map<Scenario, Integer> mix)
+            throws InterruptedException {
+        Scenario[] scenarios = mix.keySet().toArray(new Scenario[0]);
+        int[] cumulativeWeights = new int[scenarios.length];
+        int totalWeight = 0;
+        for (int i = 0; i < scenarios.length; i++) {
+            totalWeight += mix.get(scenarios[i]);
+            cumulativeWeights[i] = totalWeight;
+        }
+        int weightSum = totalWeight;
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Map<Scenario, LatencyRecorder>> workerResults = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+
+        System.out.printf("Load test: %d workers, %s warmup, %s measured, mix %s%n",
+                concurrency, warmup, duration, mix);
+        for (int w = 0; w < concurrency; w++) {
+            Map<Scenario, LatencyRecorder> recorders = new EnumMap<>(Scenario.class);
+            for (Scenario scenario : Scenario.values()) {
+                recorders.put(scenario, new LatencyRecorder());
+            }
+            workerResults.add(recorders);
+            LoadTestClient client = new LoadTestClient(baseUrl, users, objectMapper);
+
+            Thread worker = new Thread(() -> {
+                while (true) {
+                    long start = System.nanoTime();
+                    if (start >= measureUntil) {
+                        return;
+                    }
+                    int pick = ThreadLocalRandom.current().nextInt(weightSum);
+                    int index = 0;
+                    while (cumulativeWeights[index] <= pick) {
+                        index++;
+                    }
+                    Scenario scenario = client.effective(scenarios[index]);
+
+                    boolean success;
+                    try {
+                        success = client.execute(scenario);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        success = false;
+                    }
+                    long elapsed = System.nanoTime() - start;
+
+                    // Operations that started during the warmup are not counted
+                    if (start >= measureFrom) {
+                        if (success) {
+                            recorders.get(scenario).record(elapsed);
+                        } else {
+                            recorders.get(scenario).error();
+                        }
+                    }
+                }
+            }, "loadtest-" + w);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Map<Scenario, LatencyRecorder> merged = new EnumMap<>(Scenario.class);
+        for (Scenario scenario : Scenario.values()) {
+            LatencyRecorder recorder = LatencyRecorder.merge(
+                    workerResults.stream().map(recorders -> recorders.get(scenario)).toList());
+            if (recorder.count() > 0 || recorder.errors() > 0) {
+                merged.put(scenario, recorder);
+            }
+        }
+        return merged;
+    }
+
+    private static void report(Map<Scenario, LatencyRecorder> results, int concurrency, Duration duration)
+            throws IOException {
+        double seconds = duration.toNanos() / 1e9;
+        Map<String, Object> scenarios = new LinkedHashMap<>();
+
+        System.out.printf("%n%-20s %10s %10s %10s %10s %10s %10s %8s%n",
+                "scenario", "ops", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors");
+        long totalOps = 0;
+        long totalErrors = 0;
+        for (Map.Entry<Scenario, LatencyRecorder> entry : results.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            System.out.printf("%-20s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                    entry.getKey().key(), recorder.count(), recorder.count() / seconds,
+                    millis(recorder.percentile(50)), millis(recorder.percentile(99)),
+                    millis(recorder.percentile(99.9)), millis(recorder.max()), recorder.errors());
+            totalOps += recorder.count();
+            totalErrors += recorder.errors();
+
+            Map<String, Object> scenario = new LinkedHashMap<>();
+            scenario.put("operations", recorder.count());
+            scenario.put("errors", recorder.errors());
+            scenario.put("throughput", recorder.count() / seconds);
+            scenario.put("p50Millis", millis(recorder.percentile(50)));
+            scenario.put("p99Millis", millis(recorder.percentile(99)));
+            scenario.put("p999Millis", millis(recorder.percentile(99.9)));
+            scenario.put("maxMillis", millis(recorder.max()));
+            scenarios.put(entry.getKey().key(), scenario);
+        }
+        System.out.printf("%-20s %10d %10.1f %54d%n", "total", totalOps, totalOps / seconds, totalErrors);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("concurrency", concurrency);
+        result.put("durationSeconds", seconds);
+        result.put("throughput", totalOps / seconds);
+        result.put("errors", totalErrors);
+        result.put("scenarios", scenarios);
+        File file = new File("target/loadtest-result.json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, result);
+        System.out.println("Results written to " + file.getPath());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
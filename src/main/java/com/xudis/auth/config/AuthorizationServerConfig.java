@@ -1,17 +1,42 @@
 package com.xudis.auth.config;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
-import com.xudis.auth.service.JwtTokenService;
+import com.xudis.auth.security.BoundedPasswordEncoder;
+import com.xudis.auth.security.CachingRegisteredClientRepository;
+import com.xudis.auth.security.HashedJdbcOAuth2AuthorizationService;
+import com.xudis.auth.security.RedisOAuth2AuthorizationService;
+import com.xudis.auth.security.TimedOAuth2AuthorizationService;
+import com.xudis.auth.service.SigningKeyRing;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.http.converter.OAuth2ErrorHttpMessageConverter;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncodingException;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationConsentService;
 import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
 import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationConsentService;
@@ -20,17 +45,37 @@ import org.springframework.security.oauth2.server.authorization.client.JdbcRegis
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configurers.OAuth2AuthorizationServerConfigurer;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
 import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.token.JwtEncodingContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenCustomizer;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
 import org.springframework.security.web.util.matcher.MediaTypeRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 
+import java.time.Duration;
+
 @Configuration
 @RequiredArgsConstructor
 public class AuthorizationServerConfig {
 
-    private final JwtTokenService jwtTokenService;
+    public static final String ACCESS_TOKEN_SIGNATURE_ALGORITHM = "settings.token.access-token-signature-algorithm";
+
+    private final SigningKeyRing signingKeyRing;
+
+    @Value("${auth.registered-client-cache.maximum-size:1000}")
+    private long registeredClientCacheMaximumSize;
+
+    @Value("${auth.registered-client-cache.ttl:10m}")
+    private Duration registeredClientCacheTtl;
+
+    @Value("${auth.authorization-store.type:jdbc}")
+    private String authorizationStoreType;
+
+    @Value("${auth.authorization-store.redis.default-ttl:10m}")
+    private Duration authorizationStoreDefaultTtl;
 
     @Bean
     @Order(1)
@@ -42,6 +87,11 @@ public class AuthorizationServerConfig {
         // Keep your OIDC enablement
         authorizationServerConfigurer.oidc(Customizer.withDefaults());
 
+        // Client secrets are checked by the bounded BCrypt pool too; a full pool answers 429 instead of a 500
+        authorizationServerConfigurer.clientAuthentication(clientAuthentication -> clientAuthentication
+                .authenticationProviders(providers -> providers.replaceAll(AuthorizationServerConfig::busyAsOAuth2Error))
+                .errorResponseHandler(clientAuthenticationFailureHandler()));
+
         // Ensure this filter chain only applies to Authorization Server endpoints
         RequestMatcher endpointsMatcher = authorizationServerConfigurer.getEndpointsMatcher();
 
@@ -63,16 +113,67 @@ public class AuthorizationServerConfig {
         return http.build();
     }
 
+    private static AuthenticationProvider busyAsOAuth2Error(AuthenticationProvider delegate) {
+        return new AuthenticationProvider() {
+            @Override
+            public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+                try {
+                    return delegate.authenticate(authentication);
+                } catch (BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+                    throw new OAuth2AuthenticationException(new OAuth2Error(OAuth2ErrorCodes.TEMPORARILY_UNAVAILABLE,
+                            e.getMessage(), null), e);
+                }
+            }
+
+            @Override
+            public boolean supports(Class<?> authentication) {
+                return delegate.supports(authentication);
+            }
+        };
+    }
+
+    // Same responses as the filter's own handler, plus 429 with Retry-After for a busy password encoder
+    private static AuthenticationFailureHandler clientAuthenticationFailureHandler() {
+        OAuth2ErrorHttpMessageConverter errorConverter = new OAuth2ErrorHttpMessageConverter();
+        return (request, response, exception) -> {
+            SecurityContextHolder.clearContext();
+            OAuth2Error error = ((OAuth2AuthenticationException) exception).getError();
+            ServletServerHttpResponse httpResponse = new ServletServerHttpResponse(response);
+            if (exception.getCause() instanceof BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+                httpResponse.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                httpResponse.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            } else if (OAuth2ErrorCodes.INVALID_CLIENT.equals(error.getErrorCode())) {
+                httpResponse.setStatusCode(HttpStatus.UNAUTHORIZED);
+            } else {
+                httpResponse.setStatusCode(HttpStatus.BAD_REQUEST);
+            }
+            errorConverter.write(new OAuth2Error(error.getErrorCode()), null, httpResponse);
+        };
+    }
+
     @Bean
-    public RegisteredClientRepository registeredClientRepository(JdbcTemplate jdbcTemplate) {
-        return new JdbcRegisteredClientRepository(jdbcTemplate);
+    public CachingRegisteredClientRepository registeredClientRepository(
+            JdbcTemplate jdbcTemplate,
+            RedisTemplate<String, String> redisTemplate) {
+        return new CachingRegisteredClientRepository(new JdbcRegisteredClientRepository(jdbcTemplate), redisTemplate,
+                registeredClientCacheMaximumSize, registeredClientCacheTtl);
     }
 
     @Bean
     public OAuth2AuthorizationService authorizationService(
             JdbcTemplate jdbcTemplate,
-            RegisteredClientRepository registeredClientRepository) {
-        return new JdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository);
+            RedisTemplate<String, String> redisTemplate,
+            RegisteredClientRepository registeredClientRepository,
+            MeterRegistry meterRegistry) {
+        OAuth2AuthorizationService authorizationService = switch (authorizationStoreType) {
+            case "jdbc" -> new JdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository);
+            case "hashed-jdbc" -> new HashedJdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository);
+            case "redis" -> new RedisOAuth2AuthorizationService(redisTemplate, registeredClientRepository,
+                    authorizationStoreDefaultTtl);
+            default -> throw new IllegalStateException(
+                    "Unsupported auth.authorization-store.type: " + authorizationStoreType);
+        };
+        return new TimedOAuth2AuthorizationService(authorizationService, meterRegistry, authorizationStoreType);
     }
 
     @Bean
@@ -83,8 +184,41 @@ public class AuthorizationServerConfig {
     }
 
     @Bean
-    public JWKSource<SecurityContext> jwkSource() throws Exception {
-        return jwtTokenService.jwkSource();
+    public JWKSource<SecurityContext> jwkSource() {
+        return signingKeyRing.jwkSource();
+    }
+
+    @Bean
+    public JwtEncoder jwtEncoder(JWKSource<SecurityContext> jwkSource) {
+        NimbusJwtEncoder jwtEncoder = new NimbusJwtEncoder(jwkSource);
+        // Retired keys stay in the JWK set for verification; only the active key of an algorithm is private
+        jwtEncoder.setJwkSelector(jwks -> jwks.stream()
+                .filter(JWK::isPrivate)
+                .findFirst()
+                .orElseThrow(() -> new JwtEncodingException("No active signing key among " + jwks.size())));
+        return jwtEncoder;
+    }
+
+    // Per-client access token algorithm, e.g. TokenSettings.builder().setting(ACCESS_TOKEN_SIGNATURE_ALGORITHM, "ES256").
+    // ID tokens already use the standard TokenSettings#idTokenSignatureAlgorithm.
+    @Bean
+    public OAuth2TokenCustomizer<JwtEncodingContext> jwtTokenCustomizer() {
+        return context -> {
+            if (!OAuth2TokenType.ACCESS_TOKEN.equals(context.getTokenType())) {
+                return;
+            }
+            Object algorithm = context.getRegisteredClient().getTokenSettings()
+                    .getSetting(ACCESS_TOKEN_SIGNATURE_ALGORITHM);
+            if (algorithm == null) {
+                return;
+            }
+            SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.from(algorithm.toString());
+            if (signatureAlgorithm == null || !signingKeyRing.supports(JWSAlgorithm.parse(signatureAlgorithm.getName()))) {
+                throw new IllegalStateException("Signing algorithm " + algorithm + " of client "
+                        + context.getRegisteredClient().getClientId() + " is not in auth.jwt.key-ring.algorithms");
+            }
+            context.getJwsHeader().algorithm(signatureAlgorithm);
+        };
     }
 
     @Bean
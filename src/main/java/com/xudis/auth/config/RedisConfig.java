@@ -1,9 +1,17 @@
 package com.xudis.auth.config;
 
+import com.xudis.auth.security.CachingRegisteredClientRepository;
+import com.xudis.auth.security.SessionAttributeSerializer;
+import com.xudis.auth.security.UserDetailsCache;
+import com.xudis.auth.service.TokenBlacklistFilter;
+import io.micrometer.core.instrument.binder.commonspool2.CommonsObjectPool2Metrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -19,4 +27,31 @@ public class RedisConfig {
         template.setHashValueSerializer(new StringRedisSerializer());
         return template;
     }
+
+    // Picked up by Spring Session by name: session attributes as JSON and compact scalars instead of JDK serialization
+    @Bean
+    public RedisSerializer<Object> springSessionDefaultRedisSerializer() {
+        return new SessionAttributeSerializer(RedisConfig.class.getClassLoader());
+    }
+
+    // Lettuce connection pool gauges (commons.pool2.*), read from the pool's JMX bean
+    @Bean
+    public CommonsObjectPool2Metrics commonsObjectPool2Metrics() {
+        return new CommonsObjectPool2Metrics();
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            TokenBlacklistFilter tokenBlacklistFilter,
+            UserDetailsCache userDetailsCache,
+            CachingRegisteredClientRepository registeredClientRepository) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(tokenBlacklistFilter, new ChannelTopic(TokenBlacklistFilter.CHANNEL));
+        container.addMessageListener(userDetailsCache, new ChannelTopic(UserDetailsCache.CHANNEL));
+        container.addMessageListener(registeredClientRepository,
+                new ChannelTopic(CachingRegisteredClientRepository.CHANNEL));
+        return container;
+    }
 }
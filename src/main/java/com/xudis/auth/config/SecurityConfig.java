@@ -1,37 +1,135 @@
 package com.xudis.auth.config;
 
+import com.xudis.auth.security.BoundedPasswordEncoder;
 import com.xudis.auth.security.CustomUserDetailsService;
+import com.xudis.auth.security.LoginThrottle;
+import com.xudis.auth.security.ThrottlingAuthenticationManager;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+
+import java.time.Duration;
 
 @Configuration
 @RequiredArgsConstructor
 public class SecurityConfig {
 
     private final CustomUserDetailsService userDetailsService;
+    private final LoginThrottle loginThrottle;
+
+    // 0 means one thread per available processor
+    @Value("${auth.password-encoder.threads:0}")
+    private int passwordEncoderThreads;
+
+    @Value("${auth.password-encoder.queue-capacity:100}")
+    private int passwordEncoderQueueCapacity;
+
+    @Value("${auth.password-encoder.retry-after:1s}")
+    private Duration passwordEncoderRetryAfter;
+
+    @Value("${auth.login-throttle.enabled:true}")
+    private boolean loginThrottleEnabled;
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        int threads = passwordEncoderThreads > 0 ? passwordEncoderThreads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, passwordEncoderQueueCapacity,
+                passwordEncoderRetryAfter, meterRegistry);
     }
 
+    // Metrics carry per-user and per-client series, so scrapes authenticate with HTTP Basic as a user holding
+    // ROLE_METRICS; the health probe stays open
     @Bean
     @Order(2)
-    public SecurityFilterChain defaultSecurityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain actuatorSecurityFilterChain(HttpSecurity http,
+                                                           AuthenticationManager authenticationManager)
+            throws Exception {
+        http
+                .securityMatcher("/actuator/**")
+                .authorizeHttpRequests(authorize -> authorize
+                        .requestMatchers("/actuator/health").permitAll()
+                        .anyRequest().hasAuthority("ROLE_METRICS")
+                )
+                .authenticationManager(authenticationManager)
+                .httpBasic(Customizer.withDefaults())
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                );
+
+        return http.build();
+    }
+
+    // Introspection hands out the claims of any token, so gateways call it with HTTP Basic as a user holding
+    // ROLE_INTROSPECT. Stateless, so there is no session cookie to forge requests with.
+    @Bean
+    @Order(3)
+    public SecurityFilterChain introspectionSecurityFilterChain(HttpSecurity http,
+                                                                AuthenticationManager authenticationManager)
+            throws Exception {
+        http
+                .securityMatcher("/api/auth/introspect/**")
+                .authorizeHttpRequests(authorize -> authorize
+                        .anyRequest().hasAuthority("ROLE_INTROSPECT")
+                )
+                .csrf(csrf -> csrf.disable())
+                .authenticationManager(authenticationManager)
+                .httpBasic(Customizer.withDefaults())
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                );
+
+        return http.build();
+    }
+
+    // Bulk import, listing and session revocation need an administrator (HTTP Basic); the other user endpoints
+    // stay as open as before. Stateless, so there is no session cookie to forge requests with.
+    @Bean
+    @Order(4)
+    public SecurityFilterChain userManagementSecurityFilterChain(HttpSecurity http,
+                                                                 AuthenticationManager authenticationManager)
+            throws Exception {
+        http
+                .securityMatcher("/api/users/**")
+                .authorizeHttpRequests(authorize -> authorize
+                        .requestMatchers(HttpMethod.POST, "/api/users/batch").hasAuthority("ROLE_ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/api/users").hasAuthority("ROLE_ADMIN")
+                        .requestMatchers(HttpMethod.DELETE, "/api/users/*/sessions").hasAuthority("ROLE_ADMIN")
+                        .anyRequest().permitAll()
+                )
+                .csrf(csrf -> csrf.disable())
+                .authenticationManager(authenticationManager)
+                .httpBasic(Customizer.withDefaults())
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                );
+
+        return http.build();
+    }
+
+    @Bean
+    @Order(5)
+    public SecurityFilterChain defaultSecurityFilterChain(HttpSecurity http,
+                                                          AuthenticationManager authenticationManager)
+            throws Exception {
         http
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers("/api/auth/**").permitAll()
-                        .requestMatchers("/api/users/**").permitAll()
                         .requestMatchers("/.well-known/**").permitAll()
                         .requestMatchers("/oauth2/**").permitAll()
                         .requestMatchers("/login").permitAll()
@@ -41,13 +139,15 @@ public class SecurityConfig {
                 )
                 .csrf(csrf -> csrf
                         .ignoringRequestMatchers("/api/auth/**")
-                        .ignoringRequestMatchers("/api/users/**")
                 )
                 .sessionManagement(session -> session
                         .sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED)
                 )
+                // Without this the form login would build its own, unthrottled manager
+                .authenticationManager(formLoginAuthenticationManager(authenticationManager))
                 .formLogin(form -> form
                         .loginPage("/login")
+                        .failureHandler(formLoginFailureHandler())
                         .permitAll()
                 );
 
@@ -55,9 +155,37 @@ public class SecurityConfig {
     }
 
     @Bean
-    public AuthenticationManager authenticationManager() {
+    public AuthenticationManager authenticationManager(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider(userDetailsService);
-        authenticationProvider.setPasswordEncoder(passwordEncoder());
-        return new ProviderManager(authenticationProvider);
+        authenticationProvider.setPasswordEncoder(passwordEncoder);
+        ProviderManager providerManager = new ProviderManager(authenticationProvider);
+        return loginThrottleEnabled
+                ? new ThrottlingAuthenticationManager(providerManager, loginThrottle)
+                : providerManager;
+    }
+
+    // A saturated password encoder is not an AuthenticationException and would surface as a 500; the form
+    // reports it like /api/auth/login does, as too many attempts
+    private static AuthenticationManager formLoginAuthenticationManager(AuthenticationManager delegate) {
+        return authentication -> {
+            try {
+                return delegate.authenticate(authentication);
+            } catch (BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+                throw new LoginThrottle.LoginThrottledException(Duration.ofSeconds(e.getRetryAfterSeconds()));
+            }
+        };
+    }
+
+    private static AuthenticationFailureHandler formLoginFailureHandler() {
+        AuthenticationFailureHandler invalid = new SimpleUrlAuthenticationFailureHandler("/login?error");
+        AuthenticationFailureHandler throttled = new SimpleUrlAuthenticationFailureHandler("/login?throttled");
+        return (request, response, exception) -> {
+            if (exception instanceof LoginThrottle.LoginThrottledException e) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+                throttled.onAuthenticationFailure(request, response, exception);
+            } else {
+                invalid.onAuthenticationFailure(request, response, exception);
+            }
+        };
     }
 }
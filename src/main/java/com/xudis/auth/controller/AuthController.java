@@ -1,12 +1,17 @@
 package com.xudis.auth.controller;
 
 import com.xudis.auth.dto.AuthResponse;
+import com.xudis.auth.dto.IntrospectBatchRequest;
+import com.xudis.auth.dto.IntrospectBatchResponse;
 import com.xudis.auth.dto.LoginRequest;
 import com.xudis.auth.dto.RefreshRequest;
+import com.xudis.auth.security.BoundedPasswordEncoder;
+import com.xudis.auth.security.LoginThrottle;
 import com.xudis.auth.service.AuthService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -32,6 +37,23 @@ public class AuthController {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Invalid username or password");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        } catch (AuthService.InvalidClientException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid client");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        } catch (LoginThrottle.LoginThrottledException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Too many login attempts, please retry later");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(error);
+        } catch (BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+            log.warn("Login rejected, password encoder is saturated");
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Too many login attempts, please retry later");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(error);
         } catch (Exception e) {
             log.error("Login error", e);
             Map<String, String> error = new HashMap<>();
@@ -43,8 +65,26 @@ public class AuthController {
     @PostMapping("/refresh")
     public ResponseEntity<?> refresh(@Valid @RequestBody RefreshRequest refreshRequest) {
         try {
-            AuthResponse response = authService.refresh(refreshRequest.getRefreshToken());
+            AuthResponse response = authService.refresh(refreshRequest.getRefreshToken(),
+                    refreshRequest.getClientId(), refreshRequest.getClientSecret());
             return ResponseEntity.ok(response);
+        } catch (AuthService.InvalidClientException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid client");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        } catch (LoginThrottle.LoginThrottledException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Too many attempts, please retry later");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(error);
+        } catch (BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+            log.warn("Refresh rejected, password encoder is saturated");
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Too many attempts, please retry later");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(error);
         } catch (Exception e) {
             log.error("Refresh token error", e);
             Map<String, String> error = new HashMap<>();
@@ -53,6 +93,23 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/introspect/batch")
+    public ResponseEntity<?> introspectBatch(@Valid @RequestBody IntrospectBatchRequest request) {
+        try {
+            IntrospectBatchResponse response = authService.introspect(request.getTokens());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        } catch (Exception e) {
+            log.error("Introspection error", e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Introspection failed");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
     @PostMapping("/logout")
     public ResponseEntity<?> logout(@RequestHeader("Authorization") String authHeader) {
         try {
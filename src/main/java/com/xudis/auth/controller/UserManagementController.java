@@ -1,16 +1,26 @@
 package com.xudis.auth.controller;
 
 import com.xudis.auth.dto.CreateUserRequest;
+import com.xudis.auth.dto.PatchUserRequest;
 import com.xudis.auth.dto.UpdateUserRequest;
+import com.xudis.auth.dto.UserPageResponse;
 import com.xudis.auth.dto.UserResponse;
+import com.xudis.auth.security.BoundedPasswordEncoder;
+import com.xudis.auth.service.UserImportService;
 import com.xudis.auth.service.UserManagementService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +31,7 @@ import java.util.Map;
 public class UserManagementController {
 
     private final UserManagementService userManagementService;
+    private final UserImportService userImportService;
 
     @PostMapping
     public ResponseEntity<Object> createUser(@Valid @RequestBody CreateUserRequest request) {
@@ -32,6 +43,13 @@ public class UserManagementController {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
             return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+            log.warn("User creation rejected, password encoder is saturated");
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Too many requests, please retry later");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(error);
         } catch (Exception e) {
             log.error("Error creating user", e);
             Map<String, String> error = new HashMap<>();
@@ -40,6 +58,15 @@ public class UserManagementController {
         }
     }
 
+    // Streams NDJSON in and out: one CreateUserRequest per input line, one UserImportResult per output line
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        userImportService.importUsers(request.getInputStream(), response.getOutputStream());
+    }
+
     @PutMapping("/{username}")
     public ResponseEntity<Object> updateUser(
             @PathVariable String username,
@@ -52,6 +79,18 @@ public class UserManagementController {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("User update conflicted: {}", username);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "User " + username + " was modified concurrently");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+            log.warn("User update rejected, password encoder is saturated");
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Too many requests, please retry later");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(error);
         } catch (Exception e) {
             log.error("Error updating user", e);
             Map<String, String> error = new HashMap<>();
@@ -60,6 +99,47 @@ public class UserManagementController {
         }
     }
 
+    @PatchMapping("/{username}")
+    public ResponseEntity<Object> patchUser(
+            @PathVariable String username,
+            @Valid @RequestBody PatchUserRequest request) {
+        try {
+            UserResponse response = userManagementService.patchUser(username, request);
+            return ResponseEntity.ok(response);
+        } catch (UserManagementService.UserNotFoundException e) {
+            log.warn("User patch failed: {}", e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        } catch (UserManagementService.UserVersionConflictException e) {
+            log.warn("User patch conflicted: {}", e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("User patch conflicted: {}", username);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "User " + username + " was modified concurrently");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        } catch (BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+            log.warn("User patch rejected, password encoder is saturated");
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Too many requests, please retry later");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(error);
+        } catch (Exception e) {
+            log.error("Error patching user", e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to patch user");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
     @DeleteMapping("/{username}")
     public ResponseEntity<Object> deleteUser(@PathVariable String username) {
         try {
@@ -80,6 +160,50 @@ public class UserManagementController {
         }
     }
 
+    @DeleteMapping("/{username}/sessions")
+    public ResponseEntity<Object> revokeSessions(@PathVariable String username) {
+        try {
+            long revoked = userManagementService.revokeSessions(username);
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Sessions revoked successfully");
+            response.put("revoked", revoked);
+            return ResponseEntity.ok(response);
+        } catch (UserManagementService.UserNotFoundException e) {
+            log.warn("Session revocation failed: {}", e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        } catch (Exception e) {
+            log.error("Error revoking sessions", e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to revoke sessions");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<Object> listUsers(
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Boolean enabled,
+            @RequestParam(required = false) String authority,
+            @RequestParam(required = false) String username,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            UserPageResponse response = userManagementService.listUsers(sort, after, enabled, authority, username, limit);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        } catch (Exception e) {
+            log.error("Error listing users", e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to list users");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
     @GetMapping("/{username}")
     public ResponseEntity<Object> getUser(@PathVariable String username) {
         try {
@@ -0,0 +1,17 @@
+package com.xudis.auth.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IntrospectBatchRequest {
+
+    @NotEmpty(message = "Tokens are required")
+    private List<String> tokens;
+}
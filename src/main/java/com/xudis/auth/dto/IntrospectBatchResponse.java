@@ -0,0 +1,16 @@
+package com.xudis.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IntrospectBatchResponse {
+
+    // In request order
+    private List<TokenIntrospection> results;
+}
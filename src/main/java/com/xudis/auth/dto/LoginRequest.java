@@ -15,4 +15,14 @@ public class LoginRequest {
 
     @NotBlank(message = "Password is required")
     private String password;
+
+    // Optional: a registered client whose TokenSettings select reference (opaque) access tokens, together with
+    // its secret
+    private String clientId;
+
+    private String clientSecret;
+
+    public LoginRequest(String username, String password) {
+        this(username, password, null, null);
+    }
 }
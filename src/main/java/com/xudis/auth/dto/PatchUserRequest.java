@@ -0,0 +1,29 @@
+package com.xudis.auth.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatchUserRequest {
+
+    // Expected current version; the update is rejected with 409 if it differs. Required, so a PATCH never
+    // silently overwrites a change it has not seen
+    @NotNull(message = "version is required")
+    private Long version;
+
+    @Size(min = 6, message = "Password must be at least 6 characters")
+    private String password;
+
+    private Boolean enabled;
+
+    private Set<String> addAuthorities;
+
+    private Set<String> removeAuthorities;
+}
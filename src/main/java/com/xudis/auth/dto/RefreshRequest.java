@@ -12,4 +12,10 @@ public class RefreshRequest {
 
     @NotBlank(message = "Refresh token is required")
     private String refreshToken;
+
+    // Optional: a registered client whose TokenSettings select reference (opaque) access tokens, together with
+    // its secret
+    private String clientId;
+
+    private String clientSecret;
 }
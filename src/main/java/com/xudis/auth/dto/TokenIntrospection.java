@@ -0,0 +1,20 @@
+package com.xudis.auth.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenIntrospection {
+
+    private boolean active;
+
+    // JWT claims (exp, iat as epoch seconds); only for active tokens
+    private Map<String, Object> claims;
+}
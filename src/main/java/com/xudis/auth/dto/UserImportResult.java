@@ -0,0 +1,25 @@
+package com.xudis.auth.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserImportResult {
+
+    private long line;
+    private String username;
+    private Status status;
+    private String error;
+
+    public enum Status {
+        CREATED,
+        CONFLICT,
+        INVALID,
+        FAILED
+    }
+}
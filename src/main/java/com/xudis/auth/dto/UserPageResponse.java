@@ -0,0 +1,18 @@
+package com.xudis.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPageResponse {
+
+    private List<UserResponse> users;
+
+    // Pass as "after" to fetch the next page; null on the last page
+    private String nextCursor;
+}
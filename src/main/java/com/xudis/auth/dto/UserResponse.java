@@ -14,4 +14,7 @@ public class UserResponse {
     private String username;
     private Boolean enabled;
     private Set<String> authorities;
+
+    // Pass back in a PATCH to reject the update if someone else changed the user meanwhile
+    private Long version;
 }
@@ -0,0 +1,38 @@
+package com.xudis.auth.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "signing_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SigningKey {
+
+    @Id
+    @Column(length = 100)
+    private String kid;
+
+    @Column(nullable = false, length = 20)
+    private String algorithm;
+
+    // Full JWK JSON including the private key parameters, as compact JWE when an encryption key is configured
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String jwk;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    // Set on a rotation: the key is published for verification from creation and signs from this instant
+    @Column(name = "activates_at")
+    private Instant activatesAt;
+
+    // Set when the key stops signing; it stays published for verification until the grace period ends
+    @Column(name = "retired_at")
+    private Instant retiredAt;
+}
@@ -31,6 +31,10 @@ public class User {
     @Column(nullable = false)
     private Boolean enabled = true;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
     private Set<Authority> authorities = new HashSet<>();
 
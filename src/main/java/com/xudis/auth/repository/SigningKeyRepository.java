@@ -0,0 +1,31 @@
+package com.xudis.auth.repository;
+
+import com.xudis.auth.entity.SigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface SigningKeyRepository extends JpaRepository<SigningKey, String> {
+
+    @Query("select k from SigningKey k where k.retiredAt is null or k.retiredAt > :publishedSince")
+    List<SigningKey> findPublished(@Param("publishedSince") Instant publishedSince);
+
+    @Modifying
+    @Query("update SigningKey k set k.retiredAt = :retiredAt where k.kid = :kid and k.retiredAt is null")
+    int retire(@Param("kid") String kid, @Param("retiredAt") Instant retiredAt);
+
+    @Modifying
+    @Query("update SigningKey k set k.retiredAt = :retiredAt where k.algorithm = :algorithm and k.retiredAt is null")
+    int retireActive(@Param("algorithm") String algorithm, @Param("retiredAt") Instant retiredAt);
+
+    // Only touches the key material, so a concurrent rotation's retiredAt is kept
+    @Modifying
+    @Query("update SigningKey k set k.jwk = :sealed where k.kid = :kid and k.jwk = :plaintext")
+    int encrypt(@Param("kid") String kid, @Param("plaintext") String plaintext, @Param("sealed") String sealed);
+}
@@ -0,0 +1,35 @@
+package com.xudis.auth.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plain JDBC operations for bulk user writes, where per-entity JPA inserts with IDENTITY keys are too slow.
+ */
+public interface UserRepositoryCustom {
+
+    Set<String> findExistingUsernames(Collection<String> usernames);
+
+    // Batch inserts the users and their authorities; must run inside a transaction
+    void insertAll(List<NewUser> users);
+
+    // One page of users in keyset order, each with all of its authorities, in a single statement
+    List<UserSummary> findPage(UserPageQuery query);
+
+    record NewUser(String username, String encodedPassword, boolean enabled, Set<String> authorities) {
+    }
+
+    enum SortKey {
+        ID,
+        USERNAME
+    }
+
+    // after is the sort key of the last row of the previous page (null for the first page); filters are optional
+    record UserPageQuery(SortKey sortKey, String after, Boolean enabled, String authority, String usernamePrefix,
+                         int limit) {
+    }
+
+    record UserSummary(long id, String username, boolean enabled, long version, Set<String> authorities) {
+    }
+}
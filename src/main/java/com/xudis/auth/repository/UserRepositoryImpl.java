@@ -0,0 +1,124 @@
+package com.xudis.auth.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public Set<String> findExistingUsernames(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT username FROM users WHERE username IN (:usernames)",
+                Map.of("usernames", usernames),
+                String.class));
+    }
+
+    @Override
+    public void insertAll(List<NewUser> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+
+        // With rewriteBatchedStatements=true the MySQL driver sends each batch as multi-row inserts
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "INSERT INTO users (username, password, enabled, created_at, updated_at) VALUES (?, ?, ?, ?, ?)",
+                users, users.size(), (ps, user) -> {
+                    ps.setString(1, user.username());
+                    ps.setString(2, user.encodedPassword());
+                    ps.setBoolean(3, user.enabled());
+                    ps.setTimestamp(4, now);
+                    ps.setTimestamp(5, now);
+                });
+
+        // Generated keys are not reliably returned for rewritten batches, so read them back in one query
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, username FROM users WHERE username IN (:usernames)",
+                Map.of("usernames", users.stream().map(NewUser::username).toList()),
+                rs -> {
+                    ids.put(rs.getString("username"), rs.getLong("id"));
+                });
+
+        List<Object[]> authorities = new ArrayList<>();
+        for (NewUser user : users) {
+            Long userId = ids.get(user.username());
+            for (String authority : user.authorities()) {
+                authorities.add(new Object[]{userId, authority});
+            }
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "INSERT INTO authorities (user_id, authority) VALUES (?, ?)", authorities);
+    }
+
+    @Override
+    public List<UserSummary> findPage(UserPageQuery query) {
+        String sortColumn = query.sortKey() == SortKey.USERNAME ? "u.username" : "u.id";
+        MapSqlParameterSource params = new MapSqlParameterSource("limit", query.limit());
+
+        // Seek on the sort key instead of OFFSET, so every page is an index range scan of `limit` rows
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        if (query.after() != null) {
+            where.append(" AND ").append(sortColumn).append(" > :after");
+            params.addValue("after", query.sortKey() == SortKey.USERNAME ? query.after() : Long.valueOf(query.after()));
+        }
+        if (query.enabled() != null) {
+            where.append(" AND u.enabled = :enabled");
+            params.addValue("enabled", query.enabled());
+        }
+        if (query.usernamePrefix() != null) {
+            where.append(" AND u.username LIKE :prefix");
+            params.addValue("prefix", escapeLike(query.usernamePrefix()) + "%");
+        }
+        if (query.authority() != null) {
+            where.append(" AND EXISTS (SELECT 1 FROM authorities f WHERE f.user_id = u.id AND f.authority = :authority)");
+            params.addValue("authority", query.authority());
+        }
+
+        // The page is limited in a derived table and then joined, so authorities never multiply the LIMIT
+        String sql = "SELECT p.id, p.username, p.enabled, p.version, a.authority"
+                + " FROM (SELECT u.id, u.username, u.enabled, u.version FROM users u" + where
+                + " ORDER BY " + sortColumn + " LIMIT :limit) p"
+                + " LEFT JOIN authorities a ON a.user_id = p.id"
+                + " ORDER BY " + sortColumn.replace("u.", "p.");
+
+        Map<Long, UserSummary> page = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, params, rs -> {
+            long id = rs.getLong("id");
+            UserSummary user = page.get(id);
+            if (user == null) {
+                user = new UserSummary(id, rs.getString("username"), rs.getBoolean("enabled"), rs.getLong("version"),
+                        new LinkedHashSet<>());
+                page.put(id, user);
+            }
+            String authority = rs.getString("authority");
+            if (authority != null) {
+                user.authorities().add(authority);
+            }
+        });
+        return new ArrayList<>(page.values());
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,174 @@
+package com.xudis.auth.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a CPU-heavy {@link PasswordEncoder} (BCrypt) on its own fixed pool with a bounded queue, so a login
+ * spike cannot occupy every servlet thread. When the queue is full the call fails fast with
+ * {@link PasswordEncoderBusyException} instead of waiting.
+ * <p>
+ * Metrics: {@code auth.password.encoder} times the hashing itself by operation, {@code auth.password.encoder.wait}
+ * the time queued before it, and the pool is published as {@code executor.*} with {@code name=password.encoder}.
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration retryAfter;
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer waitTimer;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration retryAfter,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.retryAfter = retryAfter;
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-encoder-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = meterRegistry.timer("auth.password.encoder", "operation", "encode");
+        this.matchesTimer = meterRegistry.timer("auth.password.encoder", "operation", "matches");
+        this.waitTimer = meterRegistry.timer("auth.password.encoder.wait");
+        FunctionCounter.builder("auth.password.encoder.rejected", rejectedCount, LongAdder::sum)
+                .description("Calls refused because the queue was full")
+                .register(meterRegistry);
+        new ExecutorServiceMetrics(executor, "password.encoder", List.of()).bindTo(meterRegistry);
+        log.info("Password encoder pool started with {} threads, queue capacity {}", threads, queueCapacity);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> matchesTimer.recordCallable(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Hashes many passwords in parallel for bulk callers. At most one task per pool thread is in flight, so
+     * interactive logins keep getting queue slots, and a full queue makes this call wait instead of failing.
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        Semaphore inFlight = new Semaphore(executor.getMaximumPoolSize());
+        List<Future<String>> futures = new ArrayList<>(rawPasswords.size());
+        try {
+            for (CharSequence rawPassword : rawPasswords) {
+                inFlight.acquire();
+                Callable<String> task = () -> {
+                    try {
+                        return encodeTimer.recordCallable(() -> delegate.encode(rawPassword));
+                    } finally {
+                        inFlight.release();
+                    }
+                };
+                Future<String> future;
+                while ((future = trySubmit(task)) == null) {
+                    Thread.sleep(retryAfter.toMillis());
+                }
+                futures.add(future);
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password encoder", e);
+        }
+
+        List<String> encoded = new ArrayList<>(futures.size());
+        for (Future<String> future : futures) {
+            encoded.add(await(future));
+        }
+        return encoded;
+    }
+
+    private <T> T execute(Callable<T> task) {
+        Future<T> future = trySubmit(task);
+        if (future == null) {
+            rejectedCount.increment();
+            throw new PasswordEncoderBusyException(retryAfter);
+        }
+        return await(future);
+    }
+
+    // null when the queue is full
+    private <T> Future<T> trySubmit(Callable<T> task) {
+        long submittedAt = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return task.call();
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password encoder", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Password encoder failed", e.getCause());
+        }
+    }
+
+    public static class PasswordEncoderBusyException extends RuntimeException {
+
+        private final Duration retryAfter;
+
+        public PasswordEncoderBusyException(Duration retryAfter) {
+            super("Password encoder queue is full");
+            this.retryAfter = retryAfter;
+        }
+
+        // Value for the Retry-After header, whole seconds and at least one
+        public long getRetryAfterSeconds() {
+            return Math.max(1, retryAfter.toSeconds());
+        }
+    }
+}
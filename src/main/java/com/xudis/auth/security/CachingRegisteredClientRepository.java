@@ -0,0 +1,119 @@
+package com.xudis.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps parsed {@link RegisteredClient}s in memory, indexed by id and by client id, in front of the
+ * JDBC repository, so token and authorize requests do not re-read and re-parse the client row.
+ * <p>
+ * {@link #save} clears the caches on every node through the {@link #CHANNEL} pub/sub channel. Clients change
+ * rarely, so a save drops everything rather than tracking which index entries (e.g. an old client id) are stale.
+ * <p>
+ * A lookup that read the old row can finish after the caches were cleared. Every clear moves to the next
+ * generation, and a lookup keeps its result only if the generation it started with is still current; otherwise
+ * the client is returned for this one call and not cached.
+ */
+@Slf4j
+public class CachingRegisteredClientRepository implements RegisteredClientRepository, MessageListener {
+
+    public static final String CHANNEL = "auth:registered-clients";
+
+    private final RegisteredClientRepository delegate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Cache<String, RegisteredClient> byId;
+    private final Cache<String, RegisteredClient> byClientId;
+
+    // Clears so far, compared before and after a load
+    private final AtomicLong generation = new AtomicLong();
+
+    public CachingRegisteredClientRepository(RegisteredClientRepository delegate,
+                                             RedisTemplate<String, String> redisTemplate,
+                                             long maximumSize, Duration ttl) {
+        this.delegate = delegate;
+        this.redisTemplate = redisTemplate;
+        this.byId = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).build();
+        this.byClientId = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).build();
+    }
+
+    @Override
+    public void save(RegisteredClient registeredClient) {
+        delegate.save(registeredClient);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(registeredClient.getId());
+                }
+            });
+        } else {
+            invalidate(registeredClient.getId());
+        }
+    }
+
+    @Override
+    public RegisteredClient findById(String id) {
+        return find(byId, id, delegate::findById);
+    }
+
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+        return find(byClientId, clientId, delegate::findByClientId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        clear();
+    }
+
+    // Misses are not cached, so a client created on another node is visible immediately
+    private RegisteredClient find(Cache<String, RegisteredClient> index, String key,
+                                  Function<String, RegisteredClient> loader) {
+        RegisteredClient registeredClient = index.getIfPresent(key);
+        if (registeredClient == null) {
+            // Not Cache.get(key, loader): the JDBC read would run inside a synchronized map bin
+            long generationBefore = generation.get();
+            registeredClient = loader.apply(key);
+            if (registeredClient != null && generation.get() == generationBefore) {
+                byId.put(registeredClient.getId(), registeredClient);
+                byClientId.put(registeredClient.getClientId(), registeredClient);
+                // A clear between the check and the puts still removes the entries
+                if (generation.get() != generationBefore) {
+                    byId.invalidate(registeredClient.getId());
+                    byClientId.invalidate(registeredClient.getClientId());
+                }
+            } else if (registeredClient != null) {
+                log.debug("Registered client {} changed while loading, not caching it", key);
+            }
+        }
+        return registeredClient;
+    }
+
+    private void invalidate(String id) {
+        clear();
+        try {
+            redisTemplate.convertAndSend(CHANNEL, id);
+        } catch (Exception e) {
+            // Other nodes pick up the change when their entries expire
+            log.error("Error publishing registered client change for {}", id, e);
+        }
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        byId.invalidateAll();
+        byClientId.invalidateAll();
+    }
+}
@@ -0,0 +1,78 @@
+package com.xudis.auth.security;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * {@link JdbcOAuth2AuthorizationService} whose token lookups go through the indexed SHA-256 digest columns
+ * added by {@code V5__Add_oauth2_authorization_token_hashes.sql}, instead of comparing the unindexed TEXT value
+ * columns with a full table scan. Writes are inherited unchanged; MySQL computes the digests.
+ */
+public class HashedJdbcOAuth2AuthorizationService extends JdbcOAuth2AuthorizationService {
+
+    // Digest column by the token type name passed to findByToken
+    private static final Map<String, String> HASH_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        HASH_COLUMNS.put(OAuth2ParameterNames.STATE, "state_hash");
+        HASH_COLUMNS.put(OAuth2ParameterNames.CODE, "authorization_code_hash");
+        HASH_COLUMNS.put(OAuth2TokenType.ACCESS_TOKEN.getValue(), "access_token_hash");
+        HASH_COLUMNS.put(OidcParameterNames.ID_TOKEN, "oidc_id_token_hash");
+        HASH_COLUMNS.put(OAuth2TokenType.REFRESH_TOKEN.getValue(), "refresh_token_hash");
+        HASH_COLUMNS.put(OAuth2ParameterNames.USER_CODE, "user_code_hash");
+        HASH_COLUMNS.put(OAuth2ParameterNames.DEVICE_CODE, "device_code_hash");
+    }
+
+    private static final String SELECT_BY = "SELECT * FROM oauth2_authorization WHERE ";
+
+    // Each branch uses its own index (index merge union)
+    private static final String ANY_TOKEN_FILTER = HASH_COLUMNS.values().stream()
+            .map(column -> column + " = ?")
+            .collect(Collectors.joining(" OR "));
+
+    public HashedJdbcOAuth2AuthorizationService(JdbcOperations jdbcOperations,
+                                                RegisteredClientRepository registeredClientRepository) {
+        super(jdbcOperations, registeredClientRepository);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        Assert.hasText(token, "token cannot be empty");
+        byte[] digest = sha256(token);
+        if (tokenType == null) {
+            return findBy(ANY_TOKEN_FILTER, Collections.nCopies(HASH_COLUMNS.size(), digest).toArray());
+        }
+        String column = HASH_COLUMNS.get(tokenType.getValue());
+        return column != null ? findBy(column + " = ?", digest) : null;
+    }
+
+    private OAuth2Authorization findBy(String filter, Object... args) {
+        List<OAuth2Authorization> result = getJdbcOperations().query(
+                SELECT_BY + filter, getAuthorizationRowMapper(), args);
+        return !result.isEmpty() ? result.get(0) : null;
+    }
+
+    // Same digest as the generated columns: SHA2 over the value's utf8mb4 bytes
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.xudis.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits login attempts per username and per client address before any password is checked, and client secret
+ * attempts per client id before the secret is checked.
+ * <p>
+ * Each node first takes a token from an in-process bucket (a lock-free GCRA cell, one CAS per attempt), which
+ * absorbs bursts without a network call. Attempts that pass are then counted in Redis against cluster-wide
+ * sliding windows, so spreading an attack over many nodes does not multiply the budget.
+ * <p>
+ * Only failures use up the budget: an attempt is reserved up front and given back with {@link #refund} once the
+ * password (or secret) turns out to be right, so users sharing an address do not lock each other out by logging in.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoginThrottle {
+
+    static final String KEY_PREFIX = "login_throttle:";
+
+    // KEYS: username current/previous window, address current/previous window (address keys optional).
+    // ARGV: username limit, address limit, weight of the previous window in per mille, counter TTL in ms.
+    // Counts the attempt only if every window is below its limit. Returns 0, or 1/2 for the limit that was hit.
+    private static final RedisScript<Long> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>("""
+            local weight = tonumber(ARGV[3]) / 1000
+            for i = 1, #KEYS, 2 do
+              local current = tonumber(redis.call('GET', KEYS[i]) or '0')
+              local previous = tonumber(redis.call('GET', KEYS[i + 1]) or '0')
+              if current + previous * weight >= tonumber(ARGV[(i + 1) / 2]) then
+                return (i + 1) / 2
+              end
+            end
+            for i = 1, #KEYS, 2 do
+              redis.call('INCR', KEYS[i])
+              redis.call('PEXPIRE', KEYS[i], ARGV[4])
+            end
+            return 0
+            """, Long.class);
+
+    // KEYS: current windows of the attempt being given back. Decrements each counter that is still positive.
+    private static final RedisScript<Long> REFUND_SCRIPT = new DefaultRedisScript<>("""
+            for i = 1, #KEYS do
+              if tonumber(redis.call('GET', KEYS[i]) or '0') > 0 then
+                redis.call('DECR', KEYS[i])
+              end
+            end
+            return 0
+            """, Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.login-throttle.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.login-throttle.username-burst:5}")
+    private int usernameBurst;
+
+    @Value("${auth.login-throttle.username-interval:6s}")
+    private Duration usernameInterval;
+
+    @Value("${auth.login-throttle.ip-burst:20}")
+    private int ipBurst;
+
+    @Value("${auth.login-throttle.ip-interval:1s}")
+    private Duration ipInterval;
+
+    @Value("${auth.login-throttle.maximum-keys:100000}")
+    private long maximumKeys;
+
+    @Value("${auth.login-throttle.window:15m}")
+    private Duration window;
+
+    @Value("${auth.login-throttle.username-window-limit:30}")
+    private long usernameWindowLimit;
+
+    @Value("${auth.login-throttle.ip-window-limit:300}")
+    private long ipWindowLimit;
+
+    private Cache<String, TokenBucket> usernameBuckets;
+    private Cache<String, TokenBucket> ipBuckets;
+
+    @PostConstruct
+    public void init() {
+        // An idle bucket is full again after burst * interval; dropping it then loses nothing
+        this.usernameBuckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(usernameInterval.multipliedBy(usernameBurst))
+                .build();
+        this.ipBuckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(ipInterval.multipliedBy(ipBurst))
+                .build();
+    }
+
+    /**
+     * Reserves one login attempt, or throws {@link LoginThrottledException} without reserving it when the
+     * username or the address is over a limit. {@code remoteAddress} may be null outside an HTTP request.
+     */
+    public void acquire(String username, String remoteAddress) {
+        acquire("user:" + user(username), "username", remoteAddress);
+    }
+
+    // Gives back an attempt reserved by acquire, once it succeeded
+    public void refund(String username, String remoteAddress) {
+        refundAttempt("user:" + user(username), remoteAddress);
+    }
+
+    /**
+     * Reserves one client secret check for {@code clientId}, limited like a username. Without this a user with a
+     * valid password could guess client secrets, because the successful login itself is refunded.
+     */
+    public void acquireClient(String clientId, String remoteAddress) {
+        acquire("client:" + clientId, "client", remoteAddress);
+    }
+
+    public void refundClient(String clientId, String remoteAddress) {
+        refundAttempt("client:" + clientId, remoteAddress);
+    }
+
+    /**
+     * Address of the current HTTP request, or null outside one. With {@code server.forward-headers-strategy=native}
+     * this is the client behind a trusted proxy rather than the proxy itself.
+     */
+    public static String currentRemoteAddress() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            return servletAttributes.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+
+    private void acquire(String subject, String scope, String remoteAddress) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        long wait = usernameBuckets.get(subject, key -> new TokenBucket(now))
+                .tryAcquire(now, usernameInterval.toNanos(), usernameBurst);
+        if (wait > 0) {
+            throw throttled(scope, "local", Duration.ofNanos(wait));
+        }
+        if (remoteAddress != null) {
+            wait = ipBuckets.get(remoteAddress, key -> new TokenBucket(now))
+                    .tryAcquire(now, ipInterval.toNanos(), ipBurst);
+            if (wait > 0) {
+                throw throttled("ip", "local", Duration.ofNanos(wait));
+            }
+        }
+
+        acquireShared(subject, scope, remoteAddress);
+    }
+
+    private void refundAttempt(String subject, String remoteAddress) {
+        if (!enabled) {
+            return;
+        }
+        TokenBucket bucket = usernameBuckets.getIfPresent(subject);
+        if (bucket != null) {
+            bucket.refund(usernameInterval.toNanos());
+        }
+        if (remoteAddress != null) {
+            bucket = ipBuckets.getIfPresent(remoteAddress);
+            if (bucket != null) {
+                bucket.refund(ipInterval.toNanos());
+            }
+        }
+
+        long windowIndex = System.currentTimeMillis() / window.toMillis();
+        List<String> keys = new ArrayList<>(2);
+        keys.add(KEY_PREFIX + subject + ":" + windowIndex);
+        if (remoteAddress != null) {
+            keys.add(KEY_PREFIX + "ip:" + remoteAddress + ":" + windowIndex);
+        }
+        try {
+            redisTemplate.execute(REFUND_SCRIPT, keys);
+        } catch (Exception e) {
+            // The attempt stays counted until its window passes
+            log.error("Error refunding login throttle", e);
+        }
+    }
+
+    private void acquireShared(String subject, String scope, String remoteAddress) {
+        long windowMillis = window.toMillis();
+        long nowMillis = System.currentTimeMillis();
+        long windowIndex = nowMillis / windowMillis;
+        long elapsed = nowMillis % windowMillis;
+
+        List<String> keys = new ArrayList<>(4);
+        keys.add(KEY_PREFIX + subject + ":" + windowIndex);
+        keys.add(KEY_PREFIX + subject + ":" + (windowIndex - 1));
+        if (remoteAddress != null) {
+            keys.add(KEY_PREFIX + "ip:" + remoteAddress + ":" + windowIndex);
+            keys.add(KEY_PREFIX + "ip:" + remoteAddress + ":" + (windowIndex - 1));
+        }
+
+        Long limited;
+        try {
+            limited = redisTemplate.execute(SLIDING_WINDOW_SCRIPT, keys,
+                    String.valueOf(usernameWindowLimit), String.valueOf(ipWindowLimit),
+                    String.valueOf((windowMillis - elapsed) * 1000 / windowMillis),
+                    String.valueOf(2 * windowMillis));
+        } catch (Exception e) {
+            // The local buckets still apply; a Redis outage must not lock everyone out
+            log.error("Error checking login throttle", e);
+            return;
+        }
+        if (limited != null && limited != 0) {
+            throw throttled(limited == 1 ? scope : "ip", "redis", Duration.ofMillis(windowMillis - elapsed));
+        }
+    }
+
+    // MySQL compares usernames case-insensitively, so must the throttle
+    private static String user(String username) {
+        return username != null ? username.toLowerCase(Locale.ROOT) : "";
+    }
+
+    private LoginThrottledException throttled(String scope, String tier, Duration retryAfter) {
+        meterRegistry.counter("auth.login.throttled", "scope", scope, "tier", tier).increment();
+        return new LoginThrottledException(retryAfter);
+    }
+
+    /**
+     * GCRA token bucket: the state is the theoretical arrival time of the next attempt. Each attempt moves it
+     * one interval forward, and is allowed while it stays within {@code burst} intervals of now.
+     */
+    static final class TokenBucket {
+
+        private final AtomicLong theoreticalArrival;
+
+        TokenBucket(long now) {
+            this.theoreticalArrival = new AtomicLong(now);
+        }
+
+        // 0 if a token was taken, otherwise the nanos until one is available
+        long tryAcquire(long now, long intervalNanos, int burst) {
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                long next = Math.max(arrival, now) + intervalNanos;
+                long allowedAt = next - intervalNanos * burst;
+                if (allowedAt > now) {
+                    return allowedAt - now;
+                }
+                if (theoreticalArrival.compareAndSet(arrival, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        // Undoes one tryAcquire; an arrival left in the past counts as now, so this never adds extra burst
+        void refund(long intervalNanos) {
+            theoreticalArrival.addAndGet(-intervalNanos);
+        }
+    }
+
+    public static class LoginThrottledException extends AuthenticationException {
+
+        private final Duration retryAfter;
+
+        public LoginThrottledException(Duration retryAfter) {
+            super("Too many login attempts");
+            this.retryAfter = retryAfter;
+        }
+
+        // Value for the Retry-After header, whole seconds rounded up and at least one
+        public long getRetryAfterSeconds() {
+            return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryAfter.toMillis() + 999));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.xudis.auth.security;
+
+import com.xudis.auth.service.SigningKeyRing;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.CorsProcessor;
+import org.springframework.web.cors.DefaultCorsProcessor;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the JWK set and the discovery documents from pre-encoded bytes, ahead of the security filter chain.
+ * <p>
+ * The first GET of a document goes through Spring Authorization Server as usual and its body is kept together
+ * with a strong ETag (SHA-256 of the bytes). Later requests get those bytes with {@code Cache-Control: max-age},
+ * or {@code 304 Not Modified} when {@code If-None-Match} matches. The JWK set is captured again when the key ring
+ * publishes a different set of keys; the discovery documents depend only on the configured issuer.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+@RequiredArgsConstructor
+@Slf4j
+public class MetadataResponseCacheFilter extends OncePerRequestFilter {
+
+    static final String OIDC_CONFIGURATION_PATH = "/.well-known/openid-configuration";
+    static final String AUTHORIZATION_SERVER_METADATA_PATH = "/.well-known/oauth-authorization-server";
+
+    private final SigningKeyRing signingKeyRing;
+    private final AuthorizationServerSettings authorizationServerSettings;
+    private final CorsConfigurationSource corsConfigurationSource;
+
+    @Value("${auth.metadata-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.metadata-cache.max-age:5m}")
+    private Duration maxAge;
+
+    private final CorsProcessor corsProcessor = new DefaultCorsProcessor();
+    private final Map<String, CachedResponse> responses = new ConcurrentHashMap<>();
+    private String cacheControl;
+
+    @PostConstruct
+    public void init() {
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic().getHeaderValue();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"GET".equals(request.getMethod()) || version(path(request)) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = path(request);
+        // Read before rendering: a key change in between only causes one more capture
+        String version = version(path);
+        CachedResponse cached = responses.get(path);
+        if (cached != null && cached.version().equals(version)) {
+            serve(cached, request, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+        if (wrapper.getStatus() == HttpServletResponse.SC_OK && wrapper.getContentType() != null) {
+            byte[] body = wrapper.getContentAsByteArray();
+            responses.put(path, new CachedResponse(version, body, etag(body), wrapper.getContentType()));
+            log.debug("Cached {} ({} bytes, version {})", path, body.length, version);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private void serve(CachedResponse cached, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        // The security filter chain would have applied CORS; a rejected origin gets its 403 here
+        CorsConfiguration corsConfiguration = corsConfigurationSource.getCorsConfiguration(request);
+        if (corsConfiguration != null && !corsProcessor.processRequest(corsConfiguration, request, response)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, cached.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), cached.etag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(cached.contentType());
+        response.setContentLength(cached.body().length);
+        response.getOutputStream().write(cached.body());
+    }
+
+    // Version of the document at this path, or null if the path is not cached
+    private String version(String path) {
+        if (path.equals(authorizationServerSettings.getJwkSetEndpoint())) {
+            return signingKeyRing.jwkSetVersion();
+        }
+        if (path.equals(OIDC_CONFIGURATION_PATH) || path.equals(AUTHORIZATION_SERVER_METADATA_PATH)) {
+            return "";
+        }
+        return null;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    // If-None-Match uses the weak comparison, so W/"x" matches "x"
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record CachedResponse(String version, byte[] body, String etag, String contentType) {
+    }
+}
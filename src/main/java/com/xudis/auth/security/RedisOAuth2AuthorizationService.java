@@ -0,0 +1,340 @@
+package com.xudis.auth.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.jackson2.OAuth2AuthorizationServerJackson2Module;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link OAuth2AuthorizationService} on Redis, replacing the oauth2_authorization table.
+ * <p>
+ * Each authorization is one JSON value, {@code oauth2_authorization:<id>}, that expires with its longest-lived
+ * token. Every active token has an index key {@code oauth2_token:<type>:<sha256>} holding the authorization id
+ * and expiring with that token, so lookups never scan and revoked or expired tokens simply disappear.
+ * <p>
+ * An authorization code lookup is a plain indexed read, like the other token types: the token endpoint looks the
+ * code up more than once per request, and marks it used itself by saving it invalidated. An invalidated code stays
+ * indexed until it expires, so a replay gets the authorization back with the code invalidated and the token
+ * endpoint rejects the request and revokes the tokens issued for that code.
+ */
+public class RedisOAuth2AuthorizationService implements OAuth2AuthorizationService {
+
+    private static final String AUTHORIZATION_PREFIX = "oauth2_authorization:";
+    private static final String TOKEN_INDEX_PREFIX = "oauth2_token:";
+
+    private static final String STATE = OAuth2ParameterNames.STATE;
+    private static final String CODE = OAuth2ParameterNames.CODE;
+
+    // Token classes by the token type name used in findByToken and in the index keys
+    private static final Map<String, Class<? extends OAuth2Token>> TOKEN_TYPES = new LinkedHashMap<>();
+
+    static {
+        TOKEN_TYPES.put(OAuth2TokenType.ACCESS_TOKEN.getValue(), OAuth2AccessToken.class);
+        TOKEN_TYPES.put(OAuth2TokenType.REFRESH_TOKEN.getValue(), OAuth2RefreshToken.class);
+        TOKEN_TYPES.put(CODE, OAuth2AuthorizationCode.class);
+        TOKEN_TYPES.put(OidcParameterNames.ID_TOKEN, OidcIdToken.class);
+        TOKEN_TYPES.put(OAuth2ParameterNames.USER_CODE, OAuth2UserCode.class);
+        TOKEN_TYPES.put(OAuth2ParameterNames.DEVICE_CODE, OAuth2DeviceCode.class);
+    }
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RegisteredClientRepository registeredClientRepository;
+    private final Duration defaultTtl;
+
+    // Plain mapper for the stored document; attributes and metadata use the Spring Security mapper,
+    // exactly like the JSON columns of JdbcOAuth2AuthorizationService
+    private final ObjectMapper documentMapper = new ObjectMapper();
+    private final ObjectMapper securityMapper = new ObjectMapper();
+
+    public RedisOAuth2AuthorizationService(RedisTemplate<String, String> redisTemplate,
+                                           RegisteredClientRepository registeredClientRepository,
+                                           Duration defaultTtl) {
+        this.redisTemplate = redisTemplate;
+        this.registeredClientRepository = registeredClientRepository;
+        this.defaultTtl = defaultTtl;
+        ClassLoader classLoader = RedisOAuth2AuthorizationService.class.getClassLoader();
+        this.securityMapper.registerModules(SecurityJackson2Modules.getModules(classLoader));
+        this.securityMapper.registerModule(new OAuth2AuthorizationServerJackson2Module());
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        String id = authorization.getId();
+        String document = write(toStored(authorization));
+        Duration ttl = authorizationTtl(authorization);
+        String state = authorization.getAttribute(STATE);
+
+        // Pipelined in one round trip; the document is written first, so an index never points to a missing id
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.opsForValue().set(AUTHORIZATION_PREFIX + id, document, ttl);
+                if (StringUtils.hasText(state)) {
+                    ops.opsForValue().set(indexKey(STATE, state), id, ttl);
+                }
+                TOKEN_TYPES.forEach((type, tokenClass) -> {
+                    OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(tokenClass);
+                    if (token == null) {
+                        return;
+                    }
+                    String indexKey = indexKey(type, token.getToken().getTokenValue());
+                    Duration tokenTtl = tokenTtl(token.getToken(), ttl);
+                    // A used code stays findable until it expires, for the token endpoint to detect a replay
+                    if ((token.isInvalidated() && !CODE.equals(type)) || tokenTtl.isZero()) {
+                        ops.delete(indexKey);
+                    } else {
+                        ops.opsForValue().set(indexKey, id, tokenTtl);
+                    }
+                });
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        List<String> keys = new ArrayList<>();
+        keys.add(AUTHORIZATION_PREFIX + authorization.getId());
+        String state = authorization.getAttribute(STATE);
+        if (StringUtils.hasText(state)) {
+            keys.add(indexKey(STATE, state));
+        }
+        TOKEN_TYPES.forEach((type, tokenClass) -> {
+            OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(tokenClass);
+            if (token != null) {
+                keys.add(indexKey(type, token.getToken().getTokenValue()));
+            }
+        });
+        redisTemplate.delete(keys);
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        Assert.hasText(id, "id cannot be empty");
+        String document = redisTemplate.opsForValue().get(AUTHORIZATION_PREFIX + id);
+        return document != null ? fromStored(read(document)) : null;
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        Assert.hasText(token, "token cannot be empty");
+        if (tokenType == null) {
+            List<String> types = new ArrayList<>(TOKEN_TYPES.keySet());
+            types.add(STATE);
+            List<String> ids = redisTemplate.opsForValue().multiGet(
+                    types.stream().map(type -> indexKey(type, token)).toList());
+            for (int i = 0; ids != null && i < ids.size(); i++) {
+                OAuth2Authorization authorization = ids.get(i) != null ? findById(ids.get(i)) : null;
+                if (authorization != null && holds(authorization, types.get(i), token)) {
+                    return authorization;
+                }
+            }
+            return null;
+        }
+
+        String type = tokenType.getValue();
+        if (!STATE.equals(type) && !TOKEN_TYPES.containsKey(type)) {
+            return null;
+        }
+        String id = redisTemplate.opsForValue().get(indexKey(type, token));
+        OAuth2Authorization authorization = id != null ? findById(id) : null;
+        // An index can outlive the token it was written for, e.g. an access token replaced on refresh
+        return authorization != null && holds(authorization, type, token) ? authorization : null;
+    }
+
+    private static boolean holds(OAuth2Authorization authorization, String type, String token) {
+        if (STATE.equals(type)) {
+            return token.equals(authorization.getAttribute(STATE));
+        }
+        OAuth2Authorization.Token<? extends OAuth2Token> held = authorization.getToken(TOKEN_TYPES.get(type));
+        return held != null && token.equals(held.getToken().getTokenValue());
+    }
+
+    private Duration authorizationTtl(OAuth2Authorization authorization) {
+        Instant expiresAt = null;
+        for (Class<? extends OAuth2Token> tokenClass : TOKEN_TYPES.values()) {
+            OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(tokenClass);
+            Instant tokenExpiresAt = token != null ? token.getToken().getExpiresAt() : null;
+            if (tokenExpiresAt != null && (expiresAt == null || tokenExpiresAt.isAfter(expiresAt))) {
+                expiresAt = tokenExpiresAt;
+            }
+        }
+        // Authorizations without tokens yet (pending consent) keep the default lifetime
+        if (expiresAt == null) {
+            return defaultTtl;
+        }
+        Duration ttl = Duration.between(Instant.now(), expiresAt);
+        return ttl.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : ttl;
+    }
+
+    private static Duration tokenTtl(OAuth2Token token, Duration authorizationTtl) {
+        if (token.getExpiresAt() == null) {
+            return authorizationTtl;
+        }
+        Duration ttl = Duration.between(Instant.now(), token.getExpiresAt());
+        return ttl.isNegative() ? Duration.ZERO : ttl;
+    }
+
+    // Token values are secrets and JWTs are long, so index keys carry their SHA-256 digest
+    private static String indexKey(String type, String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return TOKEN_INDEX_PREFIX + type + ":" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private StoredAuthorization toStored(OAuth2Authorization authorization) {
+        Map<String, StoredToken> tokens = new LinkedHashMap<>();
+        TOKEN_TYPES.forEach((type, tokenClass) -> {
+            OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(tokenClass);
+            if (token == null) {
+                return;
+            }
+            OAuth2Token value = token.getToken();
+            String tokenType = null;
+            Set<String> scopes = null;
+            if (value instanceof OAuth2AccessToken accessToken) {
+                tokenType = accessToken.getTokenType().getValue();
+                scopes = accessToken.getScopes();
+            }
+            tokens.put(type, new StoredToken(value.getTokenValue(), toEpochMilli(value.getIssuedAt()),
+                    toEpochMilli(value.getExpiresAt()), writeMap(token.getMetadata()), tokenType, scopes));
+        });
+        return new StoredAuthorization(authorization.getId(), authorization.getRegisteredClientId(),
+                authorization.getPrincipalName(), authorization.getAuthorizationGrantType().getValue(),
+                authorization.getAuthorizedScopes(), writeMap(authorization.getAttributes()), tokens);
+    }
+
+    private OAuth2Authorization fromStored(StoredAuthorization stored) {
+        RegisteredClient registeredClient = registeredClientRepository.findById(stored.registeredClientId());
+        if (registeredClient == null) {
+            throw new DataRetrievalFailureException("The RegisteredClient with id '" + stored.registeredClientId()
+                    + "' was not found in the RegisteredClientRepository.");
+        }
+
+        Map<String, Object> attributes = parseMap(stored.attributes());
+        OAuth2Authorization.Builder builder = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(stored.id())
+                .principalName(stored.principalName())
+                .authorizationGrantType(new AuthorizationGrantType(stored.authorizationGrantType()))
+                .authorizedScopes(stored.authorizedScopes() != null ? stored.authorizedScopes() : Set.of())
+                .attributes(attrs -> attrs.putAll(attributes));
+
+        stored.tokens().forEach((type, token) -> {
+            Map<String, Object> metadata = parseMap(token.metadata());
+            Instant issuedAt = toInstant(token.issuedAt());
+            Instant expiresAt = toInstant(token.expiresAt());
+            OAuth2Token value = switch (type) {
+                case "access_token" -> new OAuth2AccessToken(
+                        OAuth2AccessToken.TokenType.DPOP.getValue().equalsIgnoreCase(token.tokenType())
+                                ? OAuth2AccessToken.TokenType.DPOP
+                                : OAuth2AccessToken.TokenType.BEARER,
+                        token.value(), issuedAt, expiresAt, token.scopes() != null ? token.scopes() : Set.of());
+                case "refresh_token" -> new OAuth2RefreshToken(token.value(), issuedAt, expiresAt);
+                case "code" -> new OAuth2AuthorizationCode(token.value(), issuedAt, expiresAt);
+                case "id_token" -> new OidcIdToken(token.value(), issuedAt, expiresAt,
+                        castMap(metadata.get(OAuth2Authorization.Token.CLAIMS_METADATA_NAME)));
+                case "user_code" -> new OAuth2UserCode(token.value(), issuedAt, expiresAt);
+                case "device_code" -> new OAuth2DeviceCode(token.value(), issuedAt, expiresAt);
+                default -> throw new DataRetrievalFailureException("Unknown token type: " + type);
+            };
+            builder.token(value, tokenMetadata -> tokenMetadata.putAll(metadata));
+        });
+        return builder.build();
+    }
+
+    private String write(StoredAuthorization stored) {
+        try {
+            return documentMapper.writeValueAsString(stored);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private StoredAuthorization read(String document) {
+        try {
+            return documentMapper.readValue(document, StoredAuthorization.class);
+        } catch (JsonProcessingException e) {
+            throw new DataRetrievalFailureException(e.getMessage(), e);
+        }
+    }
+
+    private String writeMap(Map<String, Object> data) {
+        try {
+            return securityMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private Map<String, Object> parseMap(String data) {
+        try {
+            return securityMapper.readValue(data, new TypeReference<Map<String, Object>>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new DataRetrievalFailureException(e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static Long toEpochMilli(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : null;
+    }
+
+    private static Instant toInstant(Long epochMilli) {
+        return epochMilli != null ? Instant.ofEpochMilli(epochMilli) : null;
+    }
+
+    private record StoredAuthorization(String id, String registeredClientId, String principalName,
+                                       String authorizationGrantType, Set<String> authorizedScopes,
+                                       String attributes, Map<String, StoredToken> tokens) {
+    }
+
+    private record StoredToken(String value, Long issuedAt, Long expiresAt, String metadata, String tokenType,
+                               Set<String> scopes) {
+    }
+}
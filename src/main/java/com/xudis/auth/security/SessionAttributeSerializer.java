@@ -0,0 +1,133 @@
+package com.xudis.auth.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.security.web.savedrequest.DefaultSavedRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spring Session attribute values in Redis, in place of JDK serialization of every value.
+ * <p>
+ * The security context, the saved request and the CSRF token are written as JSON with Spring Security's Jackson
+ * modules, the session's own Long/Integer fields and other scalars as a type byte followed by text. Anything else
+ * keeps JDK serialization, whose stream header (0xACED) cannot be mistaken for the other forms, so sessions
+ * written before this serializer was deployed are still read.
+ */
+@Slf4j
+public class SessionAttributeSerializer implements RedisSerializer<Object> {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final byte JSON = '{';
+    private static final byte STRING = 'S';
+    private static final byte LONG = 'L';
+    private static final byte INTEGER = 'I';
+    private static final byte BOOLEAN = 'B';
+    private static final byte JDK_MAGIC = (byte) 0xAC;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JdkSerializationRedisSerializer jdkSerializer;
+    private final Set<Class<?>> loggedJdkTypes = ConcurrentHashMap.newKeySet();
+
+    public SessionAttributeSerializer(ClassLoader classLoader) {
+        this.objectMapper.registerModules(SecurityJackson2Modules.getModules(classLoader));
+        this.jdkSerializer = new JdkSerializationRedisSerializer(classLoader);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        // Spring Session writes null for a removed attribute
+        if (value == null) {
+            return EMPTY;
+        }
+        if (value instanceof String string) {
+            return tagged(STRING, string);
+        } else if (value instanceof Long number) {
+            return tagged(LONG, number.toString());
+        } else if (value instanceof Integer number) {
+            return tagged(INTEGER, number.toString());
+        } else if (value instanceof Boolean bool) {
+            return tagged(BOOLEAN, bool ? "1" : "0");
+        } else if (writesAsJson(value)) {
+            try {
+                return objectMapper.writeValueAsBytes(value);
+            } catch (IOException e) {
+                throw new SerializationException("Could not write session attribute as JSON", e);
+            }
+        }
+        if (loggedJdkTypes.add(value.getClass())) {
+            log.debug("Session attributes of type {} use JDK serialization", value.getClass().getName());
+        }
+        return jdkSerializer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return switch (bytes[0]) {
+            case JSON -> readJson(bytes);
+            case STRING -> text(bytes);
+            case LONG -> Long.valueOf(text(bytes));
+            case INTEGER -> Integer.valueOf(text(bytes));
+            case BOOLEAN -> bytes.length > 1 && bytes[1] == '1';
+            case JDK_MAGIC -> jdkSerializer.deserialize(bytes);
+            default -> throw new SerializationException("Unknown session attribute format: " + bytes[0]);
+        };
+    }
+
+    // Only types whose whole object graph Spring Security's Jackson modules can read back; the modules refuse
+    // to deserialize classes outside their allowlist, so anything else would be unreadable later
+    private static boolean writesAsJson(Object value) {
+        Class<?> type = value.getClass();
+        if (type == SecurityContextImpl.class) {
+            Authentication authentication = ((SecurityContextImpl) value).getAuthentication();
+            return authentication == null || isFormLogin(authentication);
+        }
+        return type == DefaultSavedRequest.class || type == DefaultCsrfToken.class;
+    }
+
+    private static boolean isFormLogin(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        Object details = authentication.getDetails();
+        return authentication.getClass() == UsernamePasswordAuthenticationToken.class
+                && (principal instanceof String || principal != null && principal.getClass() == User.class)
+                && (authentication.getCredentials() == null || authentication.getCredentials() instanceof String)
+                && (details == null || details.getClass() == WebAuthenticationDetails.class);
+    }
+
+    private Object readJson(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, Object.class);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read session attribute JSON", e);
+        }
+    }
+
+    private static byte[] tagged(byte tag, String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[utf8.length + 1];
+        bytes[0] = tag;
+        System.arraycopy(utf8, 0, bytes, 1, utf8.length);
+        return bytes;
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+    }
+}
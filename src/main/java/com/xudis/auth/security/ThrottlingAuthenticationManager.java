@@ -0,0 +1,46 @@
+package com.xudis.auth.security;
+
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+/**
+ * Consults {@link LoginThrottle} before delegating, so throttled attempts never reach the password encoder.
+ * Covers both {@code /api/auth/login} and the form login, which share the {@link AuthenticationManager} bean.
+ * A successful authentication gives its attempt back, so only failures count against the limits.
+ */
+public class ThrottlingAuthenticationManager implements AuthenticationManager {
+
+    private final AuthenticationManager delegate;
+    private final LoginThrottle loginThrottle;
+
+    public ThrottlingAuthenticationManager(AuthenticationManager delegate, LoginThrottle loginThrottle) {
+        this.delegate = delegate;
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String remoteAddress = remoteAddress(authentication);
+        loginThrottle.acquire(authentication.getName(), remoteAddress);
+        Authentication result;
+        try {
+            result = delegate.authenticate(authentication);
+        } catch (BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+            // The password was never checked
+            loginThrottle.refund(authentication.getName(), remoteAddress);
+            throw e;
+        }
+        loginThrottle.refund(authentication.getName(), remoteAddress);
+        return result;
+    }
+
+    // The form login sets WebAuthenticationDetails; /api/auth/login runs inside a request context
+    private static String remoteAddress(Authentication authentication) {
+        if (authentication.getDetails() instanceof WebAuthenticationDetails details) {
+            return details.getRemoteAddress();
+        }
+        return LoginThrottle.currentRemoteAddress();
+    }
+}
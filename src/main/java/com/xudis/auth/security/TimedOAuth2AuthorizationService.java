@@ -0,0 +1,51 @@
+package com.xudis.auth.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+/**
+ * Records every call to the wrapped {@link OAuth2AuthorizationService} as {@code auth.authorization.store}, tagged
+ * with the operation and the configured store type, so JDBC and Redis stores can be compared on one dashboard.
+ */
+public class TimedOAuth2AuthorizationService implements OAuth2AuthorizationService {
+
+    private static final String TIMER = "auth.authorization.store";
+
+    private final OAuth2AuthorizationService delegate;
+    private final Timer saveTimer;
+    private final Timer removeTimer;
+    private final Timer findByIdTimer;
+    private final Timer findByTokenTimer;
+
+    public TimedOAuth2AuthorizationService(OAuth2AuthorizationService delegate, MeterRegistry meterRegistry,
+                                           String store) {
+        this.delegate = delegate;
+        this.saveTimer = meterRegistry.timer(TIMER, "operation", "save", "store", store);
+        this.removeTimer = meterRegistry.timer(TIMER, "operation", "remove", "store", store);
+        this.findByIdTimer = meterRegistry.timer(TIMER, "operation", "find_by_id", "store", store);
+        this.findByTokenTimer = meterRegistry.timer(TIMER, "operation", "find_by_token", "store", store);
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        saveTimer.record(() -> delegate.save(authorization));
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        removeTimer.record(() -> delegate.remove(authorization));
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return findByIdTimer.record(() -> delegate.findById(id));
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        return findByTokenTimer.record(() -> delegate.findByToken(token, tokenType));
+    }
+}
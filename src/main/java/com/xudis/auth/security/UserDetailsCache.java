@@ -0,0 +1,212 @@
+package com.xudis.auth.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Two-tier cache of user details: a bounded in-process Caffeine cache in front of a shared Redis tier.
+ * <p>
+ * {@link #evict(String)} removes the Redis entry and tells every node to drop its local copy through the
+ * {@link #CHANNEL} pub/sub channel. Inside a transaction the eviction waits for the commit, so no node can
+ * reload the old row in between. Entries are keyed by the lower-cased username, because MySQL compares usernames
+ * case-insensitively and a login as {@code ALICE} loads the same row as {@code alice}.
+ * <p>
+ * A load that read the old row can finish after the eviction. Each Redis entry is a hash with a generation that
+ * eviction increments; a load writes back only if the generation is still the one it started with, and keeps the
+ * result locally only if no eviction of the key reached this node meanwhile. Otherwise the loaded user is used for
+ * this one call and not cached.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserDetailsCache implements MessageListener {
+
+    public static final String CHANNEL = "auth:user-details";
+
+    static final String KEY_PREFIX = "user_details:";
+
+    // KEYS: entry. Returns the generation and the cached JSON, '' when there is none.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            return {redis.call('HGET', KEYS[1], 'generation') or '0', redis.call('HGET', KEYS[1], 'user') or ''}
+            """, List.class);
+
+    // KEYS: entry. ARGV: generation read before loading, JSON, TTL in ms. Returns 1 if stored, 0 if evicted meanwhile.
+    private static final RedisScript<Long> WRITE_BACK_SCRIPT = new DefaultRedisScript<>("""
+            if (redis.call('HGET', KEYS[1], 'generation') or '0') ~= ARGV[1] then
+              return 0
+            end
+            redis.call('HSET', KEYS[1], 'user', ARGV[2])
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            return 1
+            """, Long.class);
+
+    // KEYS: entry. ARGV: TTL in ms. Drops the JSON and moves to the next generation.
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('HDEL', KEYS[1], 'user')
+            local generation = redis.call('HINCRBY', KEYS[1], 'generation', 1)
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return generation
+            """, Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${auth.user-details-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${auth.user-details-cache.local-ttl:60s}")
+    private Duration localTtl;
+
+    @Value("${auth.user-details-cache.redis-ttl:10m}")
+    private Duration redisTtl;
+
+    private Cache<String, CachedUser> localCache;
+
+    // Local invalidations per stripe of keys, compared before and after a load
+    private final AtomicLongArray invalidations = new AtomicLongArray(256);
+
+    @PostConstruct
+    public void init() {
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(localTtl)
+                .build();
+    }
+
+    // Loader misses (e.g. UsernameNotFoundException) propagate and are not cached
+    public UserDetails get(String username, Function<String, CachedUser> loader) {
+        String key = key(username);
+        CachedUser user = localCache.getIfPresent(key);
+        if (user == null) {
+            // Loaded outside Cache.get(key, loader): its mapping function runs inside a synchronized
+            // map bin, and blocking on Redis or JDBC there would pin a virtual thread's carrier
+            int stripe = stripe(key);
+            long invalidationsBefore = invalidations.get(stripe);
+            LoadedUser loaded = loadShared(key, username, loader);
+            user = loaded.user();
+            if (loaded.current()) {
+                localCache.put(key, user);
+                // An invalidation between the check and the put still removes the entry
+                if (invalidations.get(stripe) != invalidationsBefore) {
+                    localCache.invalidate(key);
+                }
+            }
+        }
+        return user.toUserDetails();
+    }
+
+    public void evict(String username) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(username);
+                }
+            });
+        } else {
+            evictNow(username);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        invalidateLocal(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void invalidateLocal(String key) {
+        invalidations.incrementAndGet(stripe(key));
+        localCache.invalidate(key);
+    }
+
+    private void evictNow(String username) {
+        String key = key(username);
+        invalidateLocal(key);
+        try {
+            redisTemplate.execute(EVICT_SCRIPT, List.of(KEY_PREFIX + key), String.valueOf(redisTtl.toMillis()));
+            redisTemplate.convertAndSend(CHANNEL, key);
+        } catch (Exception e) {
+            // Other nodes keep their copy until local-ttl expires
+            log.error("Error evicting cached user details for {}", username, e);
+        }
+    }
+
+    private LoadedUser loadShared(String key, String username, Function<String, CachedUser> loader) {
+        String generation = null;
+        try {
+            List<?> entry = redisTemplate.execute(READ_SCRIPT, List.of(KEY_PREFIX + key));
+            generation = (String) entry.get(0);
+            String json = (String) entry.get(1);
+            if (!json.isEmpty()) {
+                return new LoadedUser(objectMapper.readValue(json, CachedUser.class), true);
+            }
+        } catch (Exception e) {
+            log.warn("Error reading cached user details for {}, loading from database", username, e);
+        }
+
+        CachedUser user = loader.apply(username);
+        if (generation == null) {
+            return new LoadedUser(user, true);
+        }
+        try {
+            Long stored = redisTemplate.execute(WRITE_BACK_SCRIPT, List.of(KEY_PREFIX + key), generation,
+                    objectMapper.writeValueAsString(user), String.valueOf(redisTtl.toMillis()));
+            if (stored != null && stored == 0) {
+                log.debug("User details of {} were evicted while loading, not caching them", username);
+                return new LoadedUser(user, false);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Error caching user details for {}", username, e);
+        }
+        return new LoadedUser(user, true);
+    }
+
+    private int stripe(String key) {
+        return Math.floorMod(key.hashCode(), invalidations.length());
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    // current is false when an eviction overtook the load
+    private record LoadedUser(CachedUser user, boolean current) {
+    }
+
+    /**
+     * Immutable snapshot of a user. A fresh {@link UserDetails} is built per call because authentication
+     * erases the credentials of the instance it is given.
+     */
+    public record CachedUser(String username, String password, boolean enabled, Set<String> authorities) {
+
+        UserDetails toUserDetails() {
+            return new User(username, password, enabled, true, true, true,
+                    AuthorityUtils.createAuthorityList(authorities));
+        }
+    }
+}
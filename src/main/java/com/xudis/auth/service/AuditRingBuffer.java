@@ -0,0 +1,83 @@
+package com.xudis.auth.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded ring buffer for many producers and a single consumer, without locks.
+ * <p>
+ * Each slot carries a sequence number (D. Vyukov's bounded queue): a producer claims a position with one CAS on
+ * the tail and publishes the element by advancing the slot's sequence; the consumer takes it and hands the slot
+ * back for the next lap. A producer that finds the slot still unconsumed gets {@code -1} instead of waiting.
+ */
+final class AuditRingBuffer<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Written by the consumer only; atomic so that size() can be read from any thread
+    private final AtomicLong head = new AtomicLong();
+
+    AuditRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds the element and returns its position (0, 1, 2, ...), or {@code -1} if the buffer is full.
+     */
+    long offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long lag = sequences.get(index) - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.set(index, position + 1);
+                    return position;
+                }
+            } else if (lag < 0) {
+                return -1;
+            }
+            // lag > 0: another producer took this position, retry with the new tail
+        }
+    }
+
+    /**
+     * Moves up to {@code max} elements into {@code target}; consumer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<? super E> target, int max) {
+        long position = head.get();
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            target.add((E) elements[index]);
+            elements[index] = null;
+            sequences.set(index, position + elements.length);
+            position++;
+            drained++;
+        }
+        head.lazySet(position);
+        return drained;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,207 @@
+package com.xudis.auth.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records logins, refreshes and logouts in the {@code auth_audit} table without a database round trip on the
+ * request thread.
+ * <p>
+ * {@link #record} puts the event into a bounded lock-free ring buffer. A single writer thread drains it with JDBC
+ * batch inserts, once {@code batch-size} events are waiting or every {@code flush-interval}, whichever comes first.
+ * When the buffer is full the {@code overflow-policy} decides: {@code drop} discards the event and counts it in
+ * {@code auth.audit.dropped}, {@code caller-runs} inserts it on the request thread instead.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AuthAuditLog {
+
+    static final String INSERT_SQL = "INSERT INTO auth_audit "
+            + "(occurred_at, event_type, outcome, username, client_address) VALUES (?, ?, ?, ?, ?)";
+
+    private static final int USERNAME_LENGTH = 100;
+    private static final int CLIENT_ADDRESS_LENGTH = 45;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.audit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.audit.buffer-size:8192}")
+    private int bufferSize;
+
+    @Value("${auth.audit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${auth.audit.flush-interval:1s}")
+    private Duration flushInterval;
+
+    @Value("${auth.audit.overflow-policy:drop}")
+    private OverflowPolicy overflowPolicy;
+
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder overflowCount = new LongAdder();
+    private final LongAdder writeFailureCount = new LongAdder();
+
+    private AuditRingBuffer<AuditEvent> buffer;
+    private Timer writeTimer;
+    private Timer lagTimer;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        this.buffer = new AuditRingBuffer<>(bufferSize);
+        this.writeTimer = meterRegistry.timer("auth.audit.write");
+        // Time from the event to the commit of its batch
+        this.lagTimer = meterRegistry.timer("auth.audit.lag");
+        FunctionCounter.builder("auth.audit.written", writtenCount, LongAdder::sum)
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.audit.dropped", overflowCount, LongAdder::sum)
+                .description("Events discarded because the buffer was full")
+                .tag("reason", "overflow")
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.audit.dropped", writeFailureCount, LongAdder::sum)
+                .description("Events lost because their batch insert failed")
+                .tag("reason", "write_failure")
+                .register(meterRegistry);
+        Gauge.builder("auth.audit.pending", buffer, AuditRingBuffer::size)
+                .description("Events waiting for the writer")
+                .register(meterRegistry);
+
+        this.running = true;
+        this.writer = new Thread(this::runWriter, "auth-audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Audit log writer started, buffer {} events, batch size {}, flush interval {}, overflow policy {}",
+                buffer.capacity(), batchSize, flushInterval, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        // The writer drains what is left before it exits
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(flushInterval.toMillis() + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues one event. The client address is taken from the current request, if there is one.
+     */
+    public void record(EventType type, String outcome, String username) {
+        if (!enabled) {
+            return;
+        }
+        AuditEvent event = new AuditEvent(Instant.now(), type, outcome,
+                truncate(username, USERNAME_LENGTH), truncate(remoteAddress(), CLIENT_ADDRESS_LENGTH));
+        long position = buffer.offer(event);
+        if (position >= 0) {
+            // Wake the writer once per full batch instead of on every event
+            if ((position + 1) % batchSize == 0) {
+                LockSupport.unpark(writer);
+            }
+        } else if (overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+            write(List.of(event));
+        } else {
+            overflowCount.increment();
+        }
+    }
+
+    long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    long getDroppedCount() {
+        return overflowCount.sum() + writeFailureCount.sum();
+    }
+
+    private void runWriter() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            LockSupport.parkNanos(this, flushInterval.toNanos());
+            drain(batch);
+        }
+        drain(batch);
+    }
+
+    private void drain(List<AuditEvent> batch) {
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<AuditEvent> batch) {
+        try {
+            writeTimer.record(() -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setTimestamp(1, Timestamp.from(event.occurredAt()));
+                ps.setString(2, event.type().name());
+                ps.setString(3, event.outcome());
+                ps.setString(4, event.username());
+                ps.setString(5, event.clientAddress());
+            }));
+            writtenCount.add(batch.size());
+            lagTimer.record(Duration.between(batch.get(0).occurredAt(), Instant.now()));
+        } catch (RuntimeException e) {
+            // Not retried: a database that is down would otherwise stall the writer and fill the buffer
+            writeFailureCount.add(batch.size());
+            log.error("Could not write {} audit events", batch.size(), e);
+        }
+    }
+
+    private static String remoteAddress() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            return servletAttributes.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+
+    private static String truncate(String value, int length) {
+        return value != null && value.length() > length ? value.substring(0, length) : value;
+    }
+
+    public enum EventType {
+        LOGIN, REFRESH, LOGOUT
+    }
+
+    public enum OverflowPolicy {
+        DROP, CALLER_RUNS
+    }
+
+    record AuditEvent(Instant occurredAt, EventType type, String outcome, String username, String clientAddress) {
+    }
+}
@@ -1,18 +1,31 @@
 package com.xudis.auth.service;
 
 import com.xudis.auth.dto.AuthResponse;
+import com.xudis.auth.dto.IntrospectBatchResponse;
 import com.xudis.auth.dto.LoginRequest;
+import com.xudis.auth.security.BoundedPasswordEncoder;
+import com.xudis.auth.security.LoginThrottle;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -21,6 +34,14 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final JwtTokenService jwtTokenService;
     private final UserDetailsService userDetailsService;
+    private final MeterRegistry meterRegistry;
+    private final AuthAuditLog auditLog;
+    private final RegisteredClientRepository registeredClientRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final LoginThrottle loginThrottle;
+
+    private static final String LOGIN_COUNTER = "auth.login";
+    private static final String REFRESH_COUNTER = "auth.refresh";
 
     @Value("${auth.jwt.token-validity-seconds}")
     private long tokenValiditySeconds;
@@ -33,9 +54,13 @@ public class AuthService {
                             loginRequest.getPassword()
                     )
             );
+            boolean referenceToken = usesReferenceTokens(loginRequest.getClientId(), loginRequest.getClientSecret());
 
-            String accessToken = jwtTokenService.generateAccessToken(authentication);
-            String refreshToken = jwtTokenService.generateRefreshToken(authentication.getName());
+            String accessToken = accessToken(authentication, loginRequest.getClientId(), referenceToken);
+            String refreshToken = jwtTokenService.generateRefreshToken(authentication.getName(),
+                    referenceToken ? loginRequest.getClientId() : null);
+            count(LOGIN_COUNTER, "success");
+            auditLog.record(AuthAuditLog.EventType.LOGIN, "success", authentication.getName());
 
             return AuthResponse.builder()
                     .accessToken(accessToken)
@@ -44,41 +69,142 @@ public class AuthService {
                     .expiresIn(tokenValiditySeconds)
                     .build();
 
+        } catch (InvalidClientException e) {
+            count(LOGIN_COUNTER, "invalid_client");
+            auditLog.record(AuthAuditLog.EventType.LOGIN, "invalid_client", loginRequest.getUsername());
+            throw e;
+        } catch (LoginThrottle.LoginThrottledException e) {
+            count(LOGIN_COUNTER, "throttled");
+            auditLog.record(AuthAuditLog.EventType.LOGIN, "throttled", loginRequest.getUsername());
+            log.warn("Login throttled for user: {}", loginRequest.getUsername());
+            throw e;
         } catch (AuthenticationException e) {
+            count(LOGIN_COUNTER, "failure");
+            auditLog.record(AuthAuditLog.EventType.LOGIN, "failure", loginRequest.getUsername());
             log.error("Authentication failed for user: {}", loginRequest.getUsername());
             throw e;
+        } catch (BoundedPasswordEncoder.PasswordEncoderBusyException e) {
+            count(LOGIN_COUNTER, "rejected");
+            auditLog.record(AuthAuditLog.EventType.LOGIN, "rejected", loginRequest.getUsername());
+            throw e;
         }
     }
 
-    public AuthResponse refresh(String refreshToken) {
-        String username = jwtTokenService.getUsernameFromRefreshToken(refreshToken);
-        if (username == null) {
+    public AuthResponse refresh(String refreshToken, String clientId, String clientSecret) {
+        JwtTokenService.RefreshTokenOwner owner = jwtTokenService.findRefreshToken(refreshToken);
+        if (owner == null) {
+            count(REFRESH_COUNTER, "failure");
+            auditLog.record(AuthAuditLog.EventType.REFRESH, "failure", null);
             throw new RuntimeException("Invalid or expired refresh token");
         }
 
-        // Load user details to get authorities
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-        
-        // Create authentication for token generation
-        Authentication authentication = new UsernamePasswordAuthenticationToken(
-                userDetails, null, userDetails.getAuthorities()
-        );
+        boolean referenceToken;
+        try {
+            // Checked before the refresh token is consumed: it only refreshes for the client it was issued to, so a
+            // wrong or missing client neither burns the token nor trades a reference-client token for a JWT
+            if (!Objects.equals(owner.clientId(), clientId)) {
+                log.warn("Refresh token of client {} presented for client {}", owner.clientId(), clientId);
+                throw new InvalidClientException(clientId);
+            }
+            referenceToken = usesReferenceTokens(clientId, clientSecret);
+        } catch (InvalidClientException e) {
+            count(REFRESH_COUNTER, "invalid_client");
+            auditLog.record(AuthAuditLog.EventType.REFRESH, "invalid_client", owner.username());
+            throw e;
+        } catch (LoginThrottle.LoginThrottledException e) {
+            count(REFRESH_COUNTER, "throttled");
+            auditLog.record(AuthAuditLog.EventType.REFRESH, "throttled", owner.username());
+            throw e;
+        }
 
-        String newAccessToken = jwtTokenService.generateAccessToken(authentication);
-        String newRefreshToken = jwtTokenService.generateRefreshToken(username);
+        JwtTokenService.RotatedRefreshToken rotated = jwtTokenService.rotateRefreshToken(refreshToken, owner);
+        if (rotated == null) {
+            count(REFRESH_COUNTER, "failure");
+            auditLog.record(AuthAuditLog.EventType.REFRESH, "failure", owner.username());
+            throw new RuntimeException("Invalid or expired refresh token");
+        }
 
-        // Revoke old refresh token
-        jwtTokenService.revokeRefreshToken(refreshToken);
+        String newAccessToken;
+        try {
+            // Load user details to get authorities
+            UserDetails userDetails = userDetailsService.loadUserByUsername(rotated.username());
+            if (!userDetails.isEnabled()) {
+                throw new DisabledException("User is disabled");
+            }
+
+            // Create authentication for token generation
+            Authentication authentication = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities()
+            );
+            newAccessToken = accessToken(authentication, clientId, referenceToken);
+        } catch (RuntimeException e) {
+            // The old token is already consumed; do not leave a usable replacement behind
+            jwtTokenService.revokeRefreshToken(rotated.refreshToken());
+            count(REFRESH_COUNTER, "failure");
+            auditLog.record(AuthAuditLog.EventType.REFRESH, "failure", rotated.username());
+            throw e;
+        }
+        count(REFRESH_COUNTER, "success");
+        auditLog.record(AuthAuditLog.EventType.REFRESH, "success", rotated.username());
 
         return AuthResponse.builder()
                 .accessToken(newAccessToken)
-                .refreshToken(newRefreshToken)
+                .refreshToken(rotated.refreshToken())
                 .tokenType("Bearer")
                 .expiresIn(tokenValiditySeconds)
                 .build();
     }
 
+    public IntrospectBatchResponse introspect(List<String> tokens) {
+        return new IntrospectBatchResponse(jwtTokenService.introspectAll(tokens));
+    }
+
     public void logout(String token) {
-        jwtTokenService.blacklistToken(token);
+        String username = jwtTokenService.blacklistToken(token);
+        auditLog.record(AuthAuditLog.EventType.LOGOUT, username != null ? "success" : "failure", username);
+    }
+
+    /**
+     * Whether to issue a reference token carrying {@code client_id}; false without a client. The body is
+     * unauthenticated, so the client has to prove its secret and its {@code TokenSettings} must select
+     * {@link OAuth2TokenFormat#REFERENCE}, otherwise anyone could mint tokens in any client's name. Secret checks
+     * are throttled per client id, and only failed ones count.
+     */
+    private boolean usesReferenceTokens(String clientId, String clientSecret) {
+        if (clientId == null) {
+            return false;
+        }
+        RegisteredClient client = registeredClientRepository.findByClientId(clientId);
+        if (client == null) {
+            log.warn("Rejected unknown client: {}", clientId);
+            throw new InvalidClientException(clientId);
+        }
+        String remoteAddress = LoginThrottle.currentRemoteAddress();
+        loginThrottle.acquireClient(clientId, remoteAddress);
+        if (client.getClientSecret() == null || clientSecret == null
+                || (client.getClientSecretExpiresAt() != null && client.getClientSecretExpiresAt().isBefore(Instant.now()))
+                || !OAuth2TokenFormat.REFERENCE.equals(client.getTokenSettings().getAccessTokenFormat())
+                || !passwordEncoder.matches(clientSecret, client.getClientSecret())) {
+            log.warn("Rejected client credentials for client: {}", clientId);
+            throw new InvalidClientException(clientId);
+        }
+        loginThrottle.refundClient(clientId, remoteAddress);
+        return true;
+    }
+
+    private String accessToken(Authentication authentication, String clientId, boolean referenceToken) {
+        return referenceToken
+                ? jwtTokenService.generateReferenceToken(authentication, clientId)
+                : jwtTokenService.generateAccessToken(authentication);
+    }
+
+    private void count(String counter, String result) {
+        meterRegistry.counter(counter, "result", result).increment();
+    }
+
+    public static class InvalidClientException extends RuntimeException {
+        public InvalidClientException(String clientId) {
+            super("Invalid client: " + clientId);
+        }
     }
 }
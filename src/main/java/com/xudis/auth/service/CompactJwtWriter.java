@@ -0,0 +1,189 @@
+package com.xudis.auth.service;
+
+import com.nimbusds.jose.JOSEException;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Writes compact JWS access tokens without building Nimbus {@code JWTClaimsSet}/{@code SignedJWT} objects.
+ * <p>
+ * The header segment is encoded once per signing key ({@link SigningKeyRing.ActiveKey#encodedHeader()}), the
+ * claims are written as JSON into a per-thread buffer and Base64URL-encoded in place, so a token costs little
+ * more than the signature and the final string. RS256 and ES256 signatures are computed over the buffer by the
+ * key's {@link JcaTokenSigner}; EdDSA goes through the Nimbus signer.
+ */
+final class CompactJwtWriter {
+
+    private static final byte[] BASE64URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // With virtual threads each request gets fresh buffers, which costs no more than not reusing them
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private CompactJwtWriter() {
+    }
+
+    /**
+     * Signs {sub, iss, iat, exp, jti, scope} with the given key; {@code scope} is the comma-separated authorities.
+     * Times are epoch seconds. {@code signTimer} records the signature step only.
+     */
+    static String write(SigningKeyRing.ActiveKey key, Timer signTimer, String subject, String issuer,
+                        long issuedAt, long expiresAt, String jti,
+                        Collection<? extends GrantedAuthority> authorities) throws JOSEException {
+        Buffers buffers = BUFFERS.get();
+        StringBuilder json = buffers.json;
+        appendClaims(json, subject, issuer, issuedAt, expiresAt, jti, authorities, null);
+
+        // header "." base64url(claims), later followed by "." signature in the same buffer
+        byte[] payload = buffers.utf8(json);
+        int payloadLength = buffers.utf8Length;
+        byte[] header = key.encodedHeader();
+        int signingInputLength = header.length + 1 + (payloadLength * 4 + 2) / 3;
+        byte[] token = buffers.token(signingInputLength);
+        System.arraycopy(header, 0, token, 0, header.length);
+        token[header.length] = '.';
+        int length = encodeBase64Url(payload, payloadLength, token, header.length + 1);
+
+        Timer.Sample sample = Timer.start();
+        byte[] signature = key.tokenSigner() != null
+                ? key.tokenSigner().sign(token, 0, length)
+                : key.signer().sign(key.header(), Arrays.copyOf(token, length)).decode();
+        sample.stop(signTimer);
+
+        token = buffers.token(length + 1 + (signature.length * 4 + 2) / 3);
+        token[length] = '.';
+        length = encodeBase64Url(signature, signature.length, token, length + 1);
+        return new String(token, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * The same claims as {@link #write} plus {@code client_id} (if not null), as a JSON object: the value stored
+     * for a reference token.
+     */
+    static String claimsJson(String subject, String issuer, long issuedAt, long expiresAt, String jti,
+                             Collection<? extends GrantedAuthority> authorities, String clientId) {
+        StringBuilder json = BUFFERS.get().json;
+        appendClaims(json, subject, issuer, issuedAt, expiresAt, jti, authorities, clientId);
+        return json.toString();
+    }
+
+    /**
+     * Random (version 4) UUID from the shared SecureRandom. The jti is readable in every token, so a generator whose
+     * output can be predicted from one jti would reveal the jti of other users' tokens.
+     */
+    static String randomJti() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static void appendClaims(StringBuilder json, String subject, String issuer, long issuedAt,
+                                     long expiresAt, String jti, Collection<? extends GrantedAuthority> authorities,
+                                     String clientId) {
+        json.setLength(0);
+        json.append("{\"sub\":");
+        appendString(json, subject);
+        json.append(",\"iss\":");
+        appendString(json, issuer);
+        json.append(",\"iat\":").append(issuedAt);
+        json.append(",\"exp\":").append(expiresAt);
+        json.append(",\"jti\":");
+        appendString(json, jti);
+        json.append(",\"scope\":\"");
+        boolean first = true;
+        for (GrantedAuthority authority : authorities) {
+            if (!first) {
+                json.append(',');
+            }
+            appendEscaped(json, authority.getAuthority());
+            first = false;
+        }
+        json.append('"');
+        if (clientId != null) {
+            json.append(",\"client_id\":");
+            appendString(json, clientId);
+        }
+        json.append('}');
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        appendEscaped(json, value);
+        json.append('"');
+    }
+
+    private static void appendEscaped(StringBuilder json, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            } else {
+                json.append(c);
+            }
+        }
+    }
+
+    // Unpadded Base64URL of src[0, length) into dst at offset; returns the end offset
+    private static int encodeBase64Url(byte[] src, int length, byte[] dst, int offset) {
+        int i = 0;
+        for (; i + 3 <= length; i += 3) {
+            int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+            dst[offset++] = BASE64URL[bits >>> 18];
+            dst[offset++] = BASE64URL[(bits >>> 12) & 0x3F];
+            dst[offset++] = BASE64URL[(bits >>> 6) & 0x3F];
+            dst[offset++] = BASE64URL[bits & 0x3F];
+        }
+        if (length - i == 1) {
+            int bits = (src[i] & 0xFF) << 16;
+            dst[offset++] = BASE64URL[bits >>> 18];
+            dst[offset++] = BASE64URL[(bits >>> 12) & 0x3F];
+        } else if (length - i == 2) {
+            int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8;
+            dst[offset++] = BASE64URL[bits >>> 18];
+            dst[offset++] = BASE64URL[(bits >>> 12) & 0x3F];
+            dst[offset++] = BASE64URL[(bits >>> 6) & 0x3F];
+        }
+        return offset;
+    }
+
+    private static final class Buffers {
+
+        private final StringBuilder json = new StringBuilder(256);
+        private byte[] utf8 = new byte[256];
+        private int utf8Length;
+        private byte[] token = new byte[1024];
+
+        // UTF-8 of the claims in a reused array; only non-ASCII claims go through String.getBytes
+        byte[] utf8(StringBuilder json) {
+            int length = json.length();
+            if (utf8.length < length) {
+                utf8 = new byte[Math.max(length, utf8.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = json.charAt(i);
+                if (c >= 0x80) {
+                    byte[] encoded = json.toString().getBytes(StandardCharsets.UTF_8);
+                    utf8Length = encoded.length;
+                    return encoded;
+                }
+                utf8[i] = (byte) c;
+            }
+            utf8Length = length;
+            return utf8;
+        }
+
+        // Grows the token buffer, keeping its contents
+        byte[] token(int capacity) {
+            if (token.length < capacity) {
+                token = Arrays.copyOf(token, Math.max(capacity, token.length * 2));
+            }
+            return token;
+        }
+    }
+}
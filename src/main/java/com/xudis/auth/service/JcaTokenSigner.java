@@ -0,0 +1,71 @@
+package com.xudis.auth.service;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.crypto.impl.ECDSA;
+import com.nimbusds.jose.jwk.JWK;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * Signs token signing input with a JCA {@link Signature} kept per thread and initialized with the key once,
+ * where the Nimbus signers look up and initialize a new {@code Signature} for every token. ES256 signatures are
+ * transcoded from DER to the JOSE (R || S) form.
+ */
+public final class JcaTokenSigner {
+
+    private static final int ES256_SIGNATURE_LENGTH = 64;
+
+    private final String jcaAlgorithm;
+    private final PrivateKey privateKey;
+    private final boolean ecdsa;
+    private final ThreadLocal<Signature> signatures = ThreadLocal.withInitial(this::newSignature);
+
+    private JcaTokenSigner(String jcaAlgorithm, PrivateKey privateKey, boolean ecdsa) {
+        this.jcaAlgorithm = jcaAlgorithm;
+        this.privateKey = privateKey;
+        this.ecdsa = ecdsa;
+    }
+
+    /**
+     * Signer for RS256 and ES256 keys; null for EdDSA, which stays on the Nimbus (Tink) signer because the JDK's
+     * Ed25519 is several times slower, even though it allocates less.
+     */
+    static JcaTokenSigner of(JWSAlgorithm algorithm, JWK jwk) throws JOSEException {
+        if (JWSAlgorithm.RS256.equals(algorithm)) {
+            return new JcaTokenSigner("SHA256withRSA", jwk.toRSAKey().toPrivateKey(), false);
+        } else if (JWSAlgorithm.ES256.equals(algorithm)) {
+            return new JcaTokenSigner("SHA256withECDSA", jwk.toECKey().toPrivateKey(), true);
+        }
+        return null;
+    }
+
+    /**
+     * Signature of {@code input[offset, offset + length)} in JWS form (not yet Base64URL-encoded).
+     */
+    public byte[] sign(byte[] input, int offset, int length) throws JOSEException {
+        Signature signature = signatures.get();
+        try {
+            // sign() resets the Signature to its initialized state, ready for the next token
+            signature.update(input, offset, length);
+            byte[] result = signature.sign();
+            return ecdsa ? ECDSA.transcodeSignatureToConcat(result, ES256_SIGNATURE_LENGTH) : result;
+        } catch (SignatureException e) {
+            signatures.remove();
+            throw new JOSEException("Could not sign token: " + e.getMessage(), e);
+        }
+    }
+
+    private Signature newSignature() {
+        try {
+            Signature signature = Signature.getInstance(jcaAlgorithm);
+            signature.initSign(privateKey);
+            return signature;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialize " + jcaAlgorithm + " signature", e);
+        }
+    }
+}
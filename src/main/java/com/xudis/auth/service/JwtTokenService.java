@@ -1,33 +1,49 @@
 package com.xudis.auth.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.nimbusds.jose.*;
-import com.nimbusds.jose.crypto.RSASSASigner;
-import com.nimbusds.jose.crypto.RSASSAVerifier;
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
-import com.nimbusds.jose.jwk.source.JWKSource;
-import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import com.xudis.auth.dto.TokenIntrospection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
 
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.text.ParseException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -35,6 +51,9 @@ import java.util.stream.Collectors;
 public class JwtTokenService {
 
     private final RedisTemplate<String, String> redisTemplate;
+    private final TokenBlacklistFilter tokenBlacklistFilter;
+    private final SigningKeyRing signingKeyRing;
+    private final MeterRegistry meterRegistry;
     
     @Value("${auth.jwt.issuer}")
     private String issuer;
@@ -45,63 +64,89 @@ public class JwtTokenService {
     @Value("${auth.jwt.refresh-token-validity-seconds}")
     private long refreshTokenValiditySeconds;
 
-    private RSAKey rsaKey;
-    private RSASSASigner signer;
-    private RSASSAVerifier verifier;
+    @Value("${auth.jwt.verified-token-cache.maximum-size:10000}")
+    private long verifiedTokenCacheMaximumSize;
+
+    @Value("${auth.jwt.introspection.threads:0}")
+    private int introspectionThreads;
+
+    @Value("${auth.jwt.introspection.queue-capacity:100}")
+    private int introspectionQueueCapacity;
+
+    @Value("${auth.jwt.introspection.max-batch-size:1000}")
+    private int introspectionMaxBatchSize;
+
+    private Cache<String, JWTClaimsSet> verifiedTokenCache;
+
+    private ThreadPoolExecutor introspectionExecutor;
+
+    private final Map<JWSAlgorithm, Timer> signTimers = new ConcurrentHashMap<>();
 
     private static final String REFRESH_TOKEN_PREFIX = "refresh_token:";
-    private static final String TOKEN_BLACKLIST_PREFIX = "blacklist:";
+    private static final String USER_REFRESH_TOKENS_PREFIX = "user_refresh_tokens:";
+    static final String REFERENCE_TOKEN_PREFIX = "reference_token:";
+    static final String TOKEN_BLACKLIST_PREFIX = "blacklist:";
 
-    // Initialize RSA keypair at startup - NOTE: Keys are regenerated on restart
-    // For production, consider persisting keys or using a key management service
-    @PostConstruct
-    public void init() throws Exception {
-        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-        keyPairGenerator.initialize(2048);
-        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+    private static final String REDIS_TIMER = "auth.redis";
 
-        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
-        RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+    // 256 bits, as for the reference tokens of the authorization server
+    private static final int REFERENCE_TOKEN_BYTES = 32;
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
-        this.rsaKey = new RSAKey.Builder(publicKey)
-                .privateKey(privateKey)
-                .keyID(UUID.randomUUID().toString())
+    private static final String REFRESH_USERNAME_FIELD = "username";
+    private static final String REFRESH_CLIENT_ID_FIELD = "client_id";
+
+    // KEYS[1] old refresh token, KEYS[2] new refresh token, KEYS[3] the owner's index; ARGV: validity in seconds,
+    // old id, new id, new expiry (epoch millis), owner read beforehand. Consumes and replaces the token in one atomic
+    // step if it still belongs to that owner, carrying over the client it is bound to, and moves the id in the
+    // index. Returns 1, or 0 if already used.
+    private static final RedisScript<Long> ROTATE_REFRESH_TOKEN_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HGET', KEYS[1], 'username') ~= ARGV[5] then
+              return 0
+            end
+            local clientId = redis.call('HGET', KEYS[1], 'client_id')
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[2], 'username', ARGV[5])
+            if clientId then
+              redis.call('HSET', KEYS[2], 'client_id', clientId)
+            end
+            redis.call('EXPIRE', KEYS[2], ARGV[1])
+            redis.call('ZREM', KEYS[3], ARGV[2])
+            redis.call('ZADD', KEYS[3], ARGV[4], ARGV[3])
+            redis.call('EXPIRE', KEYS[3], ARGV[1])
+            return 1
+            """, Long.class);
+
+    @PostConstruct
+    public void init() {
+        this.verifiedTokenCache = Caffeine.newBuilder()
+                .maximumSize(verifiedTokenCacheMaximumSize)
+                .expireAfter(new ExpireAtTokenExpiry())
                 .build();
 
-        this.signer = new RSASSASigner(privateKey);
-        this.verifier = new RSASSAVerifier(publicKey);
-        
-        log.info("RSA keypair initialized with key ID: {}", rsaKey.getKeyID());
+        // A full queue makes the request thread verify its own chunk instead of failing the batch
+        int threads = introspectionThreads > 0 ? introspectionThreads : Runtime.getRuntime().availableProcessors();
+        this.introspectionExecutor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(introspectionQueueCapacity),
+                new CustomizableThreadFactory("token-introspection-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        new ExecutorServiceMetrics(introspectionExecutor, "token.introspection", List.of()).bindTo(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        introspectionExecutor.shutdown();
     }
 
     public String generateAccessToken(Authentication authentication) {
         try {
-            String username = authentication.getName();
-            String authorities = authentication.getAuthorities().stream()
-                    .map(GrantedAuthority::getAuthority)
-                    .collect(Collectors.joining(","));
-
-            Instant now = Instant.now();
-            Instant expiration = now.plusSeconds(tokenValiditySeconds);
-
-            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
-                    .subject(username)
-                    .issuer(issuer)
-                    .issueTime(Date.from(now))
-                    .expirationTime(Date.from(expiration))
-                    .jwtID(UUID.randomUUID().toString())
-                    .claim("scope", authorities)
-                    .build();
-
-            SignedJWT signedJWT = new SignedJWT(
-                    new JWSHeader.Builder(JWSAlgorithm.RS256)
-                            .keyID(rsaKey.getKeyID())
-                            .build(),
-                    claimsSet
-            );
-
-            signedJWT.sign(signer);
-            return signedJWT.serialize();
+            long now = Instant.now().getEpochSecond();
+            SigningKeyRing.ActiveKey signingKey = signingKeyRing.activeKey();
+            Timer signTimer = signTimers.computeIfAbsent(signingKey.algorithm(),
+                    algorithm -> meterRegistry.timer("auth.jwt.sign", "algorithm", algorithm.getName()));
+            return CompactJwtWriter.write(signingKey, signTimer, authentication.getName(), issuer,
+                    now, now + tokenValiditySeconds, CompactJwtWriter.randomJti(), authentication.getAuthorities());
 
         } catch (Exception e) {
             log.error("Error generating access token", e);
@@ -109,54 +154,172 @@ public class JwtTokenService {
         }
     }
 
-    public String generateRefreshToken(String username) {
+    /**
+     * Issues an opaque access token for clients whose {@code TokenSettings} ask for
+     * {@code OAuth2TokenFormat.REFERENCE}. The claims (those of a JWT plus {@code client_id}) are stored as JSON in
+     * {@code reference_token:<sha256>} until the token expires; the token itself is 43 random characters.
+     */
+    public String generateReferenceToken(Authentication authentication, String clientId) {
+        byte[] bytes = new byte[REFERENCE_TOKEN_BYTES];
+        SECURE_RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        long now = Instant.now().getEpochSecond();
+        String claims = CompactJwtWriter.claimsJson(authentication.getName(), issuer, now,
+                now + tokenValiditySeconds, CompactJwtWriter.randomJti(), authentication.getAuthorities(), clientId);
+        timeRedis("reference.issue", () -> {
+            redisTemplate.opsForValue().set(REFERENCE_TOKEN_PREFIX + digest(token), claims,
+                    tokenValiditySeconds, TimeUnit.SECONDS);
+            return null;
+        });
+        return token;
+    }
+
+    /**
+     * Stores a new refresh token, as a hash of its owner and the client it was issued to ({@code clientId} null for
+     * none), and records its id in the user's index ({@code user_refresh_tokens:<username>}, a sorted set scored by
+     * expiry) in the same pipeline, so {@link #revokeAllRefreshTokens} needs no SCAN.
+     */
+    public String generateRefreshToken(String username, String clientId) {
         String refreshToken = UUID.randomUUID().toString();
-        redisTemplate.opsForValue().set(
-                REFRESH_TOKEN_PREFIX + refreshToken,
-                username,
-                refreshTokenValiditySeconds,
-                TimeUnit.SECONDS
-        );
+        String indexKey = USER_REFRESH_TOKENS_PREFIX + username;
+        Map<String, String> fields = clientId != null
+                ? Map.of(REFRESH_USERNAME_FIELD, username, REFRESH_CLIENT_ID_FIELD, clientId)
+                : Map.of(REFRESH_USERNAME_FIELD, username);
+        long now = System.currentTimeMillis();
+        long expiresAt = now + TimeUnit.SECONDS.toMillis(refreshTokenValiditySeconds);
+        timeRedis("refresh.issue", () -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.opsForHash().putAll(REFRESH_TOKEN_PREFIX + refreshToken, fields);
+                ops.expire(REFRESH_TOKEN_PREFIX + refreshToken, refreshTokenValiditySeconds, TimeUnit.SECONDS);
+                ops.opsForZSet().add(indexKey, refreshToken, expiresAt);
+                // Drop ids of tokens that expired on their own
+                ops.opsForZSet().removeRangeByScore(indexKey, 0, now);
+                ops.expire(indexKey, refreshTokenValiditySeconds, TimeUnit.SECONDS);
+                return null;
+            }
+        }));
         return refreshToken;
     }
 
-    public String getUsernameFromRefreshToken(String refreshToken) {
-        return redisTemplate.opsForValue().get(REFRESH_TOKEN_PREFIX + refreshToken);
+    // Owner and client of a live refresh token, or null when it is unknown, expired or already used
+    public RefreshTokenOwner findRefreshToken(String refreshToken) {
+        List<Object> fields = timeRedis("refresh.get", () -> redisTemplate.opsForHash().multiGet(
+                REFRESH_TOKEN_PREFIX + refreshToken, List.<Object>of(REFRESH_USERNAME_FIELD, REFRESH_CLIENT_ID_FIELD)));
+        if (fields == null || fields.get(0) == null) {
+            return null;
+        }
+        return new RefreshTokenOwner((String) fields.get(0), (String) fields.get(1));
+    }
+
+    /**
+     * Exchanges a refresh token, whose owner was read with {@link #findRefreshToken}, for a new one bound to the same
+     * user and client. Passing the owner in lets the script declare the owner's index among its keys and lets the
+     * caller check the client before the token is consumed; the script then validates, consumes and replaces the
+     * token atomically. Returns null when the token was used meanwhile, so of two concurrent refreshes with the same
+     * token only one succeeds.
+     */
+    public RotatedRefreshToken rotateRefreshToken(String refreshToken, RefreshTokenOwner owner) {
+        String newRefreshToken = UUID.randomUUID().toString();
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(refreshTokenValiditySeconds);
+        Long rotated = timeRedis("refresh.rotate", () -> redisTemplate.execute(ROTATE_REFRESH_TOKEN_SCRIPT,
+                List.of(REFRESH_TOKEN_PREFIX + refreshToken, REFRESH_TOKEN_PREFIX + newRefreshToken,
+                        USER_REFRESH_TOKENS_PREFIX + owner.username()),
+                String.valueOf(refreshTokenValiditySeconds), refreshToken, newRefreshToken,
+                String.valueOf(expiresAt), owner.username()));
+        return rotated != null && rotated == 1 ? new RotatedRefreshToken(owner.username(), newRefreshToken) : null;
     }
 
     public void revokeRefreshToken(String refreshToken) {
-        redisTemplate.delete(REFRESH_TOKEN_PREFIX + refreshToken);
+        RefreshTokenOwner owner = findRefreshToken(refreshToken);
+        timeRedis("refresh.revoke", () -> {
+            redisTemplate.delete(REFRESH_TOKEN_PREFIX + refreshToken);
+            if (owner != null) {
+                redisTemplate.opsForZSet().remove(USER_REFRESH_TOKENS_PREFIX + owner.username(), refreshToken);
+            }
+            return null;
+        });
     }
 
-    public void blacklistToken(String token) {
+    /**
+     * Revokes every refresh token of a user: one read of the user's index, then all deletes in one pipeline.
+     * Returns the number of refresh tokens that were still live. Access tokens already issued stay valid until
+     * they expire.
+     */
+    public long revokeAllRefreshTokens(String username) {
+        String indexKey = USER_REFRESH_TOKENS_PREFIX + username;
+        Set<String> refreshTokens = timeRedis("refresh.index",
+                () -> redisTemplate.opsForZSet().range(indexKey, 0, -1));
+        if (refreshTokens == null || refreshTokens.isEmpty()) {
+            return 0;
+        }
+
+        List<Object> results = timeRedis("refresh.revoke_all", () -> redisTemplate.executePipelined(
+                new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                        ops.delete(refreshTokens.stream().map(REFRESH_TOKEN_PREFIX::concat).toList());
+                        // Remove only these ids: a token issued meanwhile keeps its index entry
+                        ops.opsForZSet().remove(indexKey, refreshTokens.toArray());
+                        return null;
+                    }
+                }));
+        long revoked = results.get(0) instanceof Long deleted ? deleted : 0;
+        log.info("Revoked {} refresh tokens of user {}", revoked, username);
+        return revoked;
+    }
+
+    /**
+     * Blacklists the token until it expires and returns its subject, or null if the token could not be read or
+     * its signature does not verify. Logout is unauthenticated, so an unverified token must not revoke its jti.
+     */
+    public String blacklistToken(String token) {
         try {
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            String jti = signedJWT.getJWTClaimsSet().getJWTID();
-            Date expiration = signedJWT.getJWTClaimsSet().getExpirationTime();
+            String digest = digest(token);
+            JWTClaimsSet claims = verifiedClaims(token);
+            if (claims == null) {
+                log.debug("Not blacklisting a token that does not verify");
+                return null;
+            }
+            String jti = claims.getJWTID();
+            Date expiration = claims.getExpirationTime();
             
             if (jti != null && expiration != null) {
                 long ttl = expiration.getTime() - System.currentTimeMillis();
                 if (ttl > 0) {
-                    redisTemplate.opsForValue().set(
-                            TOKEN_BLACKLIST_PREFIX + jti,
-                            "blacklisted",
-                            ttl,
-                            TimeUnit.MILLISECONDS
-                    );
+                    timeRedis("blacklist.add", () -> {
+                        redisTemplate.opsForValue().set(
+                                TOKEN_BLACKLIST_PREFIX + jti,
+                                "blacklisted",
+                                ttl,
+                                TimeUnit.MILLISECONDS
+                        );
+                        return null;
+                    });
+                    tokenBlacklistFilter.add(jti);
+                    tokenBlacklistFilter.publish(jti);
                 }
             }
+            // The blacklisted jti also covers nodes that still hold the claims in their local cache
+            if (isReferenceToken(token)) {
+                timeRedis("reference.revoke", () -> redisTemplate.delete(REFERENCE_TOKEN_PREFIX + digest));
+            }
+            verifiedTokenCache.invalidate(digest);
+            return claims.getSubject();
         } catch (Exception e) {
             log.error("Error blacklisting token", e);
+            return null;
         }
     }
 
     public boolean isTokenBlacklisted(String token) {
         try {
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            String jti = signedJWT.getJWTClaimsSet().getJWTID();
-            return jti != null && Boolean.TRUE.equals(
-                    redisTemplate.hasKey(TOKEN_BLACKLIST_PREFIX + jti)
-            );
+            return isJtiBlacklisted(claimsOf(token, digest(token)).getJWTID());
         } catch (Exception e) {
             log.error("Error checking token blacklist", e);
             return false;
@@ -165,21 +328,20 @@ public class JwtTokenService {
 
     public boolean validateToken(String token) {
         try {
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            
-            // Verify signature
-            if (!signedJWT.verify(verifier)) {
+            // Verify signature (or reuse an earlier verification of the same token)
+            JWTClaimsSet claims = verifiedClaims(token);
+            if (claims == null) {
                 return false;
             }
 
             // Check expiration
-            Date expiration = signedJWT.getJWTClaimsSet().getExpirationTime();
+            Date expiration = claims.getExpirationTime();
             if (expiration == null || expiration.before(new Date())) {
                 return false;
             }
 
             // Check if blacklisted
-            return !isTokenBlacklisted(token);
+            return !isJtiBlacklisted(claims.getJWTID());
 
         } catch (Exception e) {
             log.error("Error validating token", e);
@@ -187,12 +349,255 @@ public class JwtTokenService {
         }
     }
 
-    public JWKSource<SecurityContext> jwkSource() {
-        JWKSet jwkSet = new JWKSet(rsaKey);
-        return new ImmutableJWKSet<>(jwkSet);
+    /**
+     * Introspects many tokens at once. Signatures are verified in parallel on the introspection pool, then the
+     * stored claims of reference tokens not cached locally and the blacklist entries of all tokens that pass are
+     * read with a single MGET. Results are in input order.
+     */
+    public List<TokenIntrospection> introspectAll(List<String> tokens) {
+        if (tokens.size() > introspectionMaxBatchSize) {
+            throw new IllegalArgumentException("At most " + introspectionMaxBatchSize + " tokens per request");
+        }
+        String[] referenceDigests = new String[tokens.size()];
+        JWTClaimsSet[] claims = verifyAll(tokens, referenceDigests);
+
+        List<Integer> candidates = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < referenceDigests.length; i++) {
+            if (referenceDigests[i] != null) {
+                candidates.add(i);
+                keys.add(REFERENCE_TOKEN_PREFIX + referenceDigests[i]);
+            }
+        }
+        int references = keys.size();
+        // The Bloom filter clears most tokens without a Redis lookup. Reference tokens read here need no blacklist
+        // entry: revoking one deletes its claims.
+        for (int i = 0; i < claims.length; i++) {
+            String jti = claims[i] != null ? claims[i].getJWTID() : null;
+            if (jti != null && tokenBlacklistFilter.mightContain(jti)) {
+                candidates.add(i);
+                keys.add(TOKEN_BLACKLIST_PREFIX + jti);
+            }
+        }
+        if (!keys.isEmpty()) {
+            try {
+                List<String> values = timeRedis("introspect.mget", () -> redisTemplate.opsForValue().multiGet(keys));
+                for (int j = 0; values != null && j < values.size(); j++) {
+                    int i = candidates.get(j);
+                    if (j < references) {
+                        claims[i] = values.get(j) != null
+                                ? unexpired(storedReferenceClaims(referenceDigests[i], values.get(j)))
+                                : null;
+                    } else if (values.get(j) != null) {
+                        claims[i] = null;
+                        countBlacklistHit();
+                    }
+                }
+            } catch (Exception e) {
+                // Reference tokens not read stay inactive; tokens not checked against the blacklist stay active
+                log.error("Error reading reference tokens and token blacklist", e);
+            }
+        }
+
+        List<TokenIntrospection> results = new ArrayList<>(claims.length);
+        for (JWTClaimsSet claimsSet : claims) {
+            results.add(claimsSet != null
+                    ? new TokenIntrospection(true, claimsSet.toJSONObject())
+                    : new TokenIntrospection(false, null));
+        }
+        return results;
+    }
+
+    // Claims of each token with a valid signature that has not expired, null otherwise. Reference tokens missing
+    // from the local cache are left null and their digest recorded, for the caller to read from Redis.
+    private JWTClaimsSet[] verifyAll(List<String> tokens, String[] referenceDigests) {
+        JWTClaimsSet[] claims = new JWTClaimsSet[tokens.size()];
+        int chunkSize = Math.max(1, -Math.floorDiv(-tokens.size(), introspectionExecutor.getMaximumPoolSize()));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = 0; start < tokens.size(); start += chunkSize) {
+            int from = start;
+            int to = Math.min(start + chunkSize, tokens.size());
+            futures.add(introspectionExecutor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    String token = tokens.get(i);
+                    if (isReferenceToken(token)) {
+                        String digest = digest(token);
+                        JWTClaimsSet cached = verifiedTokenCache.getIfPresent(digest);
+                        if (cached != null) {
+                            claims[i] = unexpired(cached);
+                        } else {
+                            referenceDigests[i] = digest;
+                        }
+                    } else {
+                        claims[i] = unexpiredClaims(token);
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying tokens", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Token verification failed", e.getCause());
+        }
+        return claims;
+    }
+
+    private JWTClaimsSet unexpiredClaims(String token) {
+        try {
+            return unexpired(verifiedClaims(token));
+        } catch (ParseException | JOSEException | RuntimeException e) {
+            // Malformed input is an inactive token, not a server error
+            log.debug("Token failed introspection: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static JWTClaimsSet unexpired(JWTClaimsSet claims) {
+        Date expiration = claims != null ? claims.getExpirationTime() : null;
+        return expiration != null && expiration.after(new Date()) ? claims : null;
+    }
+
+    private boolean isJtiBlacklisted(String jti) {
+        if (jti == null || !tokenBlacklistFilter.mightContain(jti)) {
+            return false;
+        }
+        try {
+            boolean blacklisted = Boolean.TRUE.equals(
+                    timeRedis("blacklist.check", () -> redisTemplate.hasKey(TOKEN_BLACKLIST_PREFIX + jti)));
+            if (blacklisted) {
+                countBlacklistHit();
+            }
+            return blacklisted;
+        } catch (Exception e) {
+            log.error("Error checking token blacklist", e);
+            return false;
+        }
+    }
+
+    // Returns the claims of a token whose signature verifies, or null. Successful verifications are
+    // cached by token digest until the token expires, so repeated bearer tokens skip parsing and RSA.
+    // Reference tokens are looked up in Redis instead and cached the same way.
+    private JWTClaimsSet verifiedClaims(String token) throws ParseException, JOSEException {
+        String digest = digest(token);
+        JWTClaimsSet cached = verifiedTokenCache.getIfPresent(digest);
+        if (cached != null) {
+            return cached;
+        }
+        if (isReferenceToken(token)) {
+            return referenceClaims(digest);
+        }
+
+        SignedJWT signedJWT = SignedJWT.parse(token);
+        JWSVerifier verifier = signingKeyRing.verifier(signedJWT.getHeader().getKeyID());
+        if (verifier == null) {
+            return null;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean verified = signedJWT.verify(verifier);
+        sample.stop(meterRegistry.timer("auth.jwt.verify",
+                "algorithm", signedJWT.getHeader().getAlgorithm().getName()));
+        if (!verified) {
+            return null;
+        }
+
+        JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+        if (claims.getExpirationTime() != null) {
+            verifiedTokenCache.put(digest, claims);
+        }
+        return claims;
+    }
+
+    // Claims without signature verification, for lookups where the token is only used as a key
+    private JWTClaimsSet claimsOf(String token, String digest) throws ParseException {
+        JWTClaimsSet cached = verifiedTokenCache.getIfPresent(digest);
+        if (cached != null) {
+            return cached;
+        }
+        if (isReferenceToken(token)) {
+            JWTClaimsSet claims = referenceClaims(digest);
+            if (claims == null) {
+                throw new ParseException("Unknown or expired reference token", 0);
+            }
+            return claims;
+        }
+        return SignedJWT.parse(token).getJWTClaimsSet();
+    }
+
+    private JWTClaimsSet referenceClaims(String digest) throws ParseException {
+        String json = timeRedis("reference.get",
+                () -> redisTemplate.opsForValue().get(REFERENCE_TOKEN_PREFIX + digest));
+        return json != null ? cacheReferenceClaims(digest, json) : null;
+    }
+
+    private JWTClaimsSet cacheReferenceClaims(String digest, String json) throws ParseException {
+        JWTClaimsSet claims = JWTClaimsSet.parse(json);
+        if (claims.getExpirationTime() != null) {
+            verifiedTokenCache.put(digest, claims);
+        }
+        return claims;
+    }
+
+    // Claims of a reference token read in a batch, or null when they do not parse
+    private JWTClaimsSet storedReferenceClaims(String digest, String json) {
+        try {
+            return cacheReferenceClaims(digest, json);
+        } catch (ParseException e) {
+            log.debug("Stored reference token claims failed to parse: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // A compact JWS always has two dots; reference tokens are Base64URL, which has none
+    private static boolean isReferenceToken(String token) {
+        return token.indexOf('.') < 0;
+    }
+
+    // Redis round trips by operation; a failed call is recorded too
+    private <T> T timeRedis(String operation, Supplier<T> call) {
+        return meterRegistry.timer(REDIS_TIMER, "operation", operation).record(call);
+    }
+
+    private void countBlacklistHit() {
+        meterRegistry.counter("auth.blacklist.hits").increment();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record RefreshTokenOwner(String username, String clientId) {
+    }
+
+    public record RotatedRefreshToken(String username, String refreshToken) {
     }
 
-    public RSAKey getRsaKey() {
-        return rsaKey;
+    private static final class ExpireAtTokenExpiry implements Expiry<String, JWTClaimsSet> {
+
+        @Override
+        public long expireAfterCreate(String key, JWTClaimsSet claims, long currentTime) {
+            long remainingMillis = claims.getExpirationTime().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JWTClaimsSet claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JWTClaimsSet claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,427 @@
+package com.xudis.auth.service;
+
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.DirectDecrypter;
+import com.nimbusds.jose.crypto.DirectEncrypter;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.Ed25519Signer;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.JWKGenerator;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.xudis.auth.entity.SigningKey;
+import com.xudis.auth.repository.SigningKeyRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * JWT signing keys shared by all nodes through the signing_keys table.
+ * <p>
+ * There is one active key per configured algorithm (RS256, ES256 or EdDSA); tokens are signed with the
+ * active key of their algorithm. Retired keys are kept for verification and published in the JWKS until
+ * their grace period ends. Each node reloads the ring periodically, and on demand when it
+ * sees an unknown {@code kid}, so a rotation done by one node reaches the others without a restart.
+ * <p>
+ * A rotation inserts the next key with {@code activates_at} one refresh interval plus the metadata cache max-age
+ * ahead, and sets the current key's {@code retired_at} to the same instant. Until then the next key is published
+ * for verification only, so every node has reloaded it and every cached JWKS lists it before the first token
+ * signed with it is issued; at that instant all nodes switch keys.
+ * <p>
+ * With {@code auth.jwt.key-ring.encryption-key} set, the JWKs, private parameters included, are stored as JWE
+ * (dir, A256GCM) whose header carries the key's {@code kid}, so reading the table or a backup is not enough to
+ * mint tokens. Rows written without it are read as plain JSON and encrypted on the next startup that has the key.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SigningKeyRing {
+
+    private final SigningKeyRepository signingKeyRepository;
+    private final TransactionOperations transactionOperations;
+
+    // Algorithm of tokens minted by JwtTokenService
+    @Value("${auth.jwt.signing-algorithm:RS256}")
+    private String signingAlgorithm;
+
+    // Algorithms that keep an active key; RS256 is always included because it is the authorization server default
+    @Value("${auth.jwt.key-ring.algorithms:RS256}")
+    private List<String> algorithms;
+
+    @Value("${auth.jwt.key-ring.rotation-interval:7d}")
+    private Duration rotationInterval;
+
+    @Value("${auth.jwt.key-ring.grace-period:1d}")
+    private Duration gracePeriod;
+
+    @Value("${auth.jwt.key-ring.min-reload-interval:5s}")
+    private Duration minReloadInterval;
+
+    // Together these bound how stale another node's ring or a cached JWKS can be
+    @Value("${auth.jwt.key-ring.refresh-interval-ms:60000}")
+    private long refreshIntervalMs;
+
+    @Value("${auth.metadata-cache.max-age:5m}")
+    private Duration metadataMaxAge;
+
+    // Base64 of 32 random bytes; empty stores the private keys unencrypted
+    @Value("${auth.jwt.key-ring.encryption-key:}")
+    private String encryptionKey;
+
+    private SecretKey keyEncryptionKey;
+    private Duration activationDelay;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Set.of(), Long.MAX_VALUE, Map.of(), new JWKSet(), "");
+    private volatile long lastReloadNanos;
+    private Set<JWSAlgorithm> activeAlgorithms;
+    private JWSAlgorithm defaultAlgorithm;
+
+    @PostConstruct
+    public void init() {
+        defaultAlgorithm = JWSAlgorithm.parse(signingAlgorithm);
+        activeAlgorithms = new LinkedHashSet<>();
+        activeAlgorithms.add(JWSAlgorithm.RS256);
+        activeAlgorithms.add(defaultAlgorithm);
+        algorithms.forEach(algorithm -> activeAlgorithms.add(JWSAlgorithm.parse(algorithm.trim())));
+        activationDelay = Duration.ofMillis(refreshIntervalMs).plus(metadataMaxAge);
+
+        if (encryptionKey.isBlank()) {
+            log.warn("auth.jwt.key-ring.encryption-key is not set: private signing keys are stored unencrypted "
+                    + "in signing_keys, and anyone who can read the table or a backup can mint tokens");
+        } else {
+            byte[] key = Base64.getDecoder().decode(encryptionKey.trim());
+            if (key.length != 32) {
+                throw new IllegalStateException("auth.jwt.key-ring.encryption-key must be 32 bytes, Base64 encoded");
+            }
+            keyEncryptionKey = new SecretKeySpec(key, "AES");
+            encryptPlaintextKeys();
+        }
+
+        reload();
+        for (JWSAlgorithm algorithm : activeAlgorithms) {
+            if (!snapshot.active().containsKey(algorithm)) {
+                // First node to start against an empty table creates the initial key, active right away
+                SigningKey signingKey = generate(algorithm, null);
+                transactionOperations.executeWithoutResult(status -> signingKeyRepository.save(signingKey));
+            }
+        }
+        reload();
+        log.info("Signing key ring loaded, active keys: {}", snapshot.active().values().stream()
+                .map(key -> key.algorithm() + "=" + key.kid())
+                .collect(Collectors.joining(", ")));
+    }
+
+    public ActiveKey activeKey() {
+        return activeKey(defaultAlgorithm);
+    }
+
+    public ActiveKey activeKey(JWSAlgorithm algorithm) {
+        ActiveKey active = current().active().get(algorithm);
+        if (active == null) {
+            throw new IllegalStateException("No active signing key for " + algorithm);
+        }
+        return active;
+    }
+
+    public boolean supports(JWSAlgorithm algorithm) {
+        return current().active().containsKey(algorithm);
+    }
+
+    public JWSVerifier verifier(String kid) {
+        if (kid == null) {
+            return null;
+        }
+        JWSVerifier verifier = snapshot.verifiers().get(kid);
+        if (verifier == null && System.nanoTime() - lastReloadNanos > minReloadInterval.toNanos()) {
+            // Possibly a key created by another node since our last reload
+            reload();
+            verifier = snapshot.verifiers().get(kid);
+        }
+        return verifier;
+    }
+
+    public JWKSource<SecurityContext> jwkSource() {
+        return (jwkSelector, context) -> jwkSelector.select(current().jwkSet());
+    }
+
+    // Changes only when a key is added to or dropped from the JWKS, not on every periodic reload
+    public String jwkSetVersion() {
+        return snapshot.jwkSetVersion();
+    }
+
+    @Scheduled(
+            initialDelayString = "${auth.jwt.key-ring.refresh-interval-ms:60000}",
+            fixedDelayString = "${auth.jwt.key-ring.refresh-interval-ms:60000}"
+    )
+    public void refresh() {
+        try {
+            reload();
+            for (JWSAlgorithm algorithm : activeAlgorithms) {
+                ActiveKey active = snapshot.active().get(algorithm);
+                if (snapshot.rotating().contains(algorithm)) {
+                    continue;
+                }
+                // Scheduled so that the next key starts signing when the current one has been active rotationInterval
+                if (active == null || active.activeSince().plus(rotationInterval).minus(activationDelay)
+                        .isBefore(Instant.now())) {
+                    rotate(algorithm, active);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error refreshing signing key ring", e);
+        }
+    }
+
+    private void encryptPlaintextKeys() {
+        List<SigningKey> plaintext = signingKeyRepository.findAll().stream()
+                .filter(key -> !isEncrypted(key.getJwk()))
+                .toList();
+        if (!plaintext.isEmpty()) {
+            transactionOperations.executeWithoutResult(status -> plaintext.forEach(key ->
+                    signingKeyRepository.encrypt(key.getKid(), key.getJwk(), seal(key.getKid(), key.getJwk()))));
+            log.info("Encrypted {} stored signing keys", plaintext.size());
+        }
+    }
+
+    private void rotate(JWSAlgorithm algorithm, ActiveKey current) {
+        // Without a current key there is no token to keep verifiable, so the new key signs right away
+        Instant switchAt = current != null ? Instant.now().plus(activationDelay) : null;
+        SigningKey next = generate(algorithm, switchAt);
+        Boolean rotated = transactionOperations.execute(status -> {
+            Instant retiredAt = switchAt != null ? switchAt : Instant.now();
+            // The conditional update locks the current key's row, so only one node wins a concurrent rotation
+            if (current != null && signingKeyRepository.retire(current.kid(), retiredAt) == 0) {
+                return false;
+            }
+            signingKeyRepository.retireActive(algorithm.getName(), retiredAt);
+            signingKeyRepository.save(next);
+            return true;
+        });
+
+        if (Boolean.TRUE.equals(rotated)) {
+            log.info("Rotating signing key {} -> {}, switching at {}", current != null ? current.kid() : null,
+                    next.getKid(), switchAt != null ? switchAt : "now");
+        }
+        reload();
+    }
+
+    // Reloads once a scheduled key switch is due, so all nodes change signing keys at the same instant
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (System.currentTimeMillis() >= current.switchAtMillis()) {
+            reloadLock.lock();
+            try {
+                if (snapshot == current) {
+                    reload();
+                }
+            } catch (Exception e) {
+                // The outgoing key stays published through its grace period, so keep signing with it
+                log.warn("Could not reload signing key ring for a key switch", e);
+            } finally {
+                reloadLock.unlock();
+            }
+            current = snapshot;
+        }
+        return current;
+    }
+
+    private void reload() {
+        reloadLock.lock();
+        try {
+            Instant now = Instant.now();
+            List<SigningKey> keys = signingKeyRepository.findPublished(now.minus(gracePeriod));
+            // Newest key signing at this instant per algorithm; a concurrent bootstrap may have left more than one
+            Map<String, SigningKey> activeKeys = keys.stream()
+                    .filter(key -> !isAfter(key.getActivatesAt(), now)
+                            && (key.getRetiredAt() == null || key.getRetiredAt().isAfter(now)))
+                    .collect(Collectors.toMap(SigningKey::getAlgorithm, key -> key,
+                            (a, b) -> a.getCreatedAt().isAfter(b.getCreatedAt()) ? a : b));
+            Set<JWSAlgorithm> rotating = new HashSet<>();
+            Instant switchAt = null;
+            for (SigningKey key : keys) {
+                if (isAfter(key.getActivatesAt(), now)) {
+                    rotating.add(JWSAlgorithm.parse(key.getAlgorithm()));
+                    switchAt = switchAt == null || key.getActivatesAt().isBefore(switchAt)
+                            ? key.getActivatesAt() : switchAt;
+                }
+            }
+
+            Map<JWSAlgorithm, ActiveKey> active = new HashMap<>();
+            Map<String, JWSVerifier> verifiers = new HashMap<>();
+            List<JWK> jwks = new ArrayList<>();
+            for (SigningKey key : keys) {
+                JWK jwk = JWK.parse(open(key));
+                verifiers.put(key.getKid(), verifierFor(jwk));
+                if (key == activeKeys.get(key.getAlgorithm())) {
+                    JWSAlgorithm algorithm = JWSAlgorithm.parse(key.getAlgorithm());
+                    JWSHeader header = new JWSHeader.Builder(algorithm).keyID(key.getKid()).build();
+                    active.put(algorithm, new ActiveKey(key.getKid(), algorithm, signerFor(jwk), activeSince(key),
+                            header, header.toBase64URL().toString().getBytes(StandardCharsets.US_ASCII),
+                            JcaTokenSigner.of(algorithm, jwk)));
+                    jwks.add(jwk);
+                } else {
+                    // Only the active key needs its private part, so the JWT encoder can never pick another one,
+                    // not even a next key that is published but not yet signing
+                    jwks.add(jwk.toPublicJWK());
+                }
+            }
+
+            String jwkSetVersion = jwks.stream().map(JWK::getKeyID).sorted().collect(Collectors.joining(","));
+            snapshot = new Snapshot(Map.copyOf(active), Set.copyOf(rotating),
+                    switchAt != null ? switchAt.toEpochMilli() : Long.MAX_VALUE, Map.copyOf(verifiers),
+                    new JWKSet(jwks), jwkSetVersion);
+            lastReloadNanos = System.nanoTime();
+        } catch (ParseException | JOSEException e) {
+            throw new IllegalStateException("Could not load signing keys", e);
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private SigningKey generate(JWSAlgorithm algorithm, Instant activatesAt) {
+        JWKGenerator<? extends JWK> generator;
+        if (JWSAlgorithm.RS256.equals(algorithm)) {
+            generator = new RSAKeyGenerator(2048);
+        } else if (JWSAlgorithm.ES256.equals(algorithm)) {
+            generator = new ECKeyGenerator(Curve.P_256);
+        } else if (JWSAlgorithm.EdDSA.equals(algorithm)) {
+            generator = new OctetKeyPairGenerator(Curve.Ed25519);
+        } else {
+            throw new IllegalArgumentException("Unsupported signing algorithm: " + algorithm);
+        }
+
+        try {
+            JWK jwk = generator
+                    .keyUse(KeyUse.SIGNATURE)
+                    .algorithm(algorithm)
+                    .keyID(UUID.randomUUID().toString())
+                    .generate();
+            return new SigningKey(jwk.getKeyID(), algorithm.getName(), seal(jwk.getKeyID(), jwk.toJSONString()),
+                    Instant.now(), activatesAt, null);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Could not generate " + algorithm + " signing key", e);
+        }
+    }
+
+    // Compact JWE, or the JSON unchanged without an encryption key
+    private String seal(String kid, String json) {
+        if (keyEncryptionKey == null) {
+            return json;
+        }
+        try {
+            JWEObject jwe = new JWEObject(new JWEHeader.Builder(JWEAlgorithm.DIR, EncryptionMethod.A256GCM)
+                    .keyID(kid)
+                    .build(), new Payload(json));
+            jwe.encrypt(new DirectEncrypter(keyEncryptionKey));
+            return jwe.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Could not encrypt signing key " + kid, e);
+        }
+    }
+
+    private String open(SigningKey key) throws ParseException, JOSEException {
+        if (!isEncrypted(key.getJwk())) {
+            return key.getJwk();
+        }
+        if (keyEncryptionKey == null) {
+            throw new IllegalStateException("Signing key " + key.getKid()
+                    + " is encrypted but auth.jwt.key-ring.encryption-key is not set");
+        }
+        JWEObject jwe = JWEObject.parse(key.getJwk());
+        // The authenticated header ties the ciphertext to its row
+        if (!key.getKid().equals(jwe.getHeader().getKeyID())) {
+            throw new IllegalStateException("Encrypted signing key does not belong to kid " + key.getKid());
+        }
+        jwe.decrypt(new DirectDecrypter(keyEncryptionKey));
+        return jwe.getPayload().toString();
+    }
+
+    private static boolean isAfter(Instant instant, Instant now) {
+        return instant != null && instant.isAfter(now);
+    }
+
+    private static Instant activeSince(SigningKey key) {
+        return key.getActivatesAt() != null ? key.getActivatesAt() : key.getCreatedAt();
+    }
+
+    private static boolean isEncrypted(String storedJwk) {
+        return !storedJwk.startsWith("{");
+    }
+
+    private static JWSSigner signerFor(JWK jwk) throws JOSEException {
+        return switch (jwk.getKeyType().getValue()) {
+            case "RSA" -> new RSASSASigner(jwk.toRSAKey());
+            case "EC" -> new ECDSASigner(jwk.toECKey());
+            case "OKP" -> new Ed25519Signer(jwk.toOctetKeyPair());
+            default -> throw new JOSEException("Unsupported key type: " + jwk.getKeyType());
+        };
+    }
+
+    private static JWSVerifier verifierFor(JWK jwk) throws JOSEException {
+        return switch (jwk.getKeyType().getValue()) {
+            case "RSA" -> new RSASSAVerifier(jwk.toRSAKey());
+            case "EC" -> new ECDSAVerifier(jwk.toECKey());
+            case "OKP" -> new Ed25519Verifier(jwk.toOctetKeyPair().toPublicJWK());
+            default -> throw new JOSEException("Unsupported key type: " + jwk.getKeyType());
+        };
+    }
+
+    /**
+     * {@code header} and its Base64URL form {@code encodedHeader} are built once per key so minting does not
+     * serialize them per token. {@code tokenSigner} is null for EdDSA, whose tokens are signed by {@code signer}.
+     */
+    public record ActiveKey(String kid, JWSAlgorithm algorithm, JWSSigner signer, Instant activeSince,
+                            JWSHeader header, byte[] encodedHeader, JcaTokenSigner tokenSigner) {
+    }
+
+    /**
+     * {@code rotating} holds the algorithms whose next key is published but not yet signing, and
+     * {@code switchAtMillis} the earliest instant one of them starts signing.
+     */
+    private record Snapshot(Map<JWSAlgorithm, ActiveKey> active, Set<JWSAlgorithm> rotating, long switchAtMillis,
+                            Map<String, JWSVerifier> verifiers, JWKSet jwkSet, String jwkSetVersion) {
+    }
+}
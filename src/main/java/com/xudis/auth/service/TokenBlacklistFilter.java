@@ -0,0 +1,187 @@
+package com.xudis.auth.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process Bloom filter of blacklisted token IDs (jti). A negative answer means the token is
+ * definitely not blacklisted, so only filter hits need the Redis round trip.
+ * <p>
+ * Nodes learn about new entries through the {@link #CHANNEL} pub/sub channel, and the filter is rebuilt
+ * from the {@code blacklist:*} keys at startup and periodically, which also drops expired entries.
+ * <p>
+ * Pub/sub delivers at most once: messages published while the subscription is down are lost. The filter is
+ * therefore also rebuilt whenever the channel is subscribed again after a reconnect, and the periodic rebuild
+ * bounds the delay for anything else that was missed.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenBlacklistFilter implements MessageListener, SubscriptionListener {
+
+    public static final String CHANNEL = "auth:blacklist";
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Value("${auth.blacklist.filter.expected-insertions:100000}")
+    private long expectedInsertions;
+
+    @Value("${auth.blacklist.filter.false-positive-probability:0.001}")
+    private double falsePositiveProbability;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    // null until the first rebuild succeeds; callers then fall back to Redis for every check
+    private volatile BloomFilter current;
+    // receives entries added while a rebuild is scanning, so they are not lost on swap
+    private volatile BloomFilter pending;
+
+    public boolean mightContain(String jti) {
+        BloomFilter filter = current;
+        return filter == null || filter.mightContain(jti);
+    }
+
+    public void add(String jti) {
+        BloomFilter filter = current;
+        if (filter != null) {
+            filter.put(jti);
+        }
+        BloomFilter rebuilding = pending;
+        if (rebuilding != null) {
+            rebuilding.put(jti);
+        }
+    }
+
+    public void publish(String jti) {
+        redisTemplate.convertAndSend(CHANNEL, jti);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        add(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        // The first subscription is followed by the startup rebuild. Later ones come after a reconnect; the
+        // notifying thread may be the Redis client's I/O thread, so the scan runs elsewhere.
+        if (current != null) {
+            log.info("Resubscribed to {}, rebuilding token blacklist filter", CHANNEL);
+            CompletableFuture.runAsync(this::rebuild);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        // Runs after the listener container has subscribed, so no publication falls between scan and subscribe
+        rebuild();
+    }
+
+    @Scheduled(
+            initialDelayString = "${auth.blacklist.filter.rebuild-interval-ms:300000}",
+            fixedDelayString = "${auth.blacklist.filter.rebuild-interval-ms:300000}"
+    )
+    public void rebuild() {
+        if (!rebuildLock.tryLock()) {
+            return;
+        }
+        try {
+            BloomFilter filter = new BloomFilter(expectedInsertions, falsePositiveProbability);
+            pending = filter;
+
+            long count = 0;
+            ScanOptions options = ScanOptions.scanOptions()
+                    .match(JwtTokenService.TOKEN_BLACKLIST_PREFIX + "*")
+                    .count(1000)
+                    .build();
+            try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                while (cursor.hasNext()) {
+                    filter.put(cursor.next().substring(JwtTokenService.TOKEN_BLACKLIST_PREFIX.length()));
+                    count++;
+                }
+            }
+
+            current = filter;
+            log.info("Token blacklist filter rebuilt with {} entries", count);
+            if (count > expectedInsertions) {
+                log.warn("Blacklist size {} exceeds auth.blacklist.filter.expected-insertions ({}), "
+                        + "false positive rate will rise", count, expectedInsertions);
+            }
+        } catch (Exception e) {
+            log.error("Error rebuilding token blacklist filter, keeping previous filter", e);
+        } finally {
+            pending = null;
+            rebuildLock.unlock();
+        }
+    }
+
+    static final class BloomFilter {
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashFunctions;
+
+        BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+            long n = Math.max(1, expectedInsertions);
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, (m + 63) >>> 6));
+            this.bitCount = bits.length() * 64L;
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        }
+
+        void put(String value) {
+            long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+            long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL);
+            for (int i = 0; i < hashFunctions; i++) {
+                long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                if ((bits.get(word) & mask) == 0) {
+                    bits.getAndAccumulate(word, mask, (a, b) -> a | b);
+                }
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+            long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL);
+            for (int i = 0; i < hashFunctions; i++) {
+                long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long hash(String value, long seed) {
+            long h = seed;
+            for (int i = 0; i < value.length(); i++) {
+                h = (h ^ value.charAt(i)) * 0x100000001B3L;
+            }
+            // MurmurHash3 finalizer to spread the FNV state over all 64 bits
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.xudis.auth.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.xudis.auth.dto.CreateUserRequest;
+import com.xudis.auth.dto.UserImportResult;
+import com.xudis.auth.repository.UserRepository;
+import com.xudis.auth.repository.UserRepositoryCustom.NewUser;
+import com.xudis.auth.security.BoundedPasswordEncoder;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk user import from NDJSON, one {@link CreateUserRequest} per line.
+ * <p>
+ * Input is processed in chunks: each chunk is validated, checked against existing usernames in one query,
+ * hashed in parallel on the password encoder pool and written with JDBC batch inserts in its own
+ * transaction. One {@link UserImportResult} per input line is written and flushed after every chunk, so
+ * memory use does not grow with the input.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserImportService {
+
+    private static final Set<String> DEFAULT_AUTHORITIES = Set.of("ROLE_USER");
+    private static final int MAX_AUTHORITY_LENGTH = 50;
+
+    private final UserRepository userRepository;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final TransactionOperations transactionOperations;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${auth.user-import.chunk-size:500}")
+    private int chunkSize;
+
+    public void importUsers(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        SequenceWriter results = objectMapper.writer().withRootValueSeparator("\n").writeValues(output);
+
+        List<Line> chunk = new ArrayList<>(chunkSize);
+        long lineNumber = 0;
+        long total = 0;
+        long created = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            lineNumber++;
+            if (text.isBlank()) {
+                continue;
+            }
+            chunk.add(new Line(lineNumber, text));
+            if (chunk.size() == chunkSize) {
+                total += chunk.size();
+                created += importChunk(chunk, results);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            total += chunk.size();
+            created += importChunk(chunk, results);
+        }
+        results.close();
+
+        log.info("User import finished: {} created, {} rejected", created, total - created);
+    }
+
+    // Returns the number of users created
+    private int importChunk(List<Line> lines, SequenceWriter out) throws IOException {
+        UserImportResult[] results = new UserImportResult[lines.size()];
+        List<Integer> accepted = new ArrayList<>();
+        List<CreateUserRequest> requests = new ArrayList<>();
+        Set<String> usernames = new HashSet<>();
+        // Lower-cased: the unique index on users.username is case-insensitive
+        Set<String> usernameKeys = new HashSet<>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            CreateUserRequest request;
+            try {
+                request = objectMapper.readValue(line.text(), CreateUserRequest.class);
+            } catch (JsonProcessingException e) {
+                request = null;
+            }
+            // A line holding the literal null parses to null
+            if (request == null) {
+                results[i] = result(line, null, UserImportResult.Status.INVALID, "Malformed JSON");
+                continue;
+            }
+
+            Set<ConstraintViolation<CreateUserRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                results[i] = result(line, request.getUsername(), UserImportResult.Status.INVALID,
+                        violations.iterator().next().getMessage());
+            } else if (request.getAuthorities() != null && request.getAuthorities().stream()
+                    .anyMatch(authority -> authority == null || authority.isBlank()
+                            || authority.length() > MAX_AUTHORITY_LENGTH)) {
+                results[i] = result(line, request.getUsername(), UserImportResult.Status.INVALID,
+                        "Authorities must be non-blank and at most " + MAX_AUTHORITY_LENGTH + " characters");
+            } else if (!usernameKeys.add(request.getUsername().toLowerCase(Locale.ROOT))) {
+                results[i] = result(line, request.getUsername(), UserImportResult.Status.CONFLICT,
+                        "Duplicate username in batch");
+            } else {
+                usernames.add(request.getUsername());
+                accepted.add(i);
+                requests.add(request);
+            }
+        }
+
+        Set<String> existing = userRepository.findExistingUsernames(usernames).stream()
+                .map(username -> username.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        List<Integer> newIndexes = new ArrayList<>();
+        List<CreateUserRequest> newRequests = new ArrayList<>();
+        for (int j = 0; j < requests.size(); j++) {
+            CreateUserRequest request = requests.get(j);
+            int i = accepted.get(j);
+            if (existing.contains(request.getUsername().toLowerCase(Locale.ROOT))) {
+                results[i] = result(lines.get(i), request.getUsername(), UserImportResult.Status.CONFLICT,
+                        "Username already exists: " + request.getUsername());
+            } else {
+                newIndexes.add(i);
+                newRequests.add(request);
+            }
+        }
+
+        // Hashed before the transaction starts, so no connection is held during BCrypt
+        List<String> encodedPasswords = passwordEncoder.encodeAll(
+                newRequests.stream().map(CreateUserRequest::getPassword).toList());
+        List<NewUser> newUsers = new ArrayList<>(newRequests.size());
+        for (int j = 0; j < newRequests.size(); j++) {
+            CreateUserRequest request = newRequests.get(j);
+            Set<String> authorities = request.getAuthorities() == null || request.getAuthorities().isEmpty()
+                    ? DEFAULT_AUTHORITIES
+                    : request.getAuthorities();
+            newUsers.add(new NewUser(request.getUsername(), encodedPasswords.get(j),
+                    request.getEnabled() != null ? request.getEnabled() : true, authorities));
+        }
+
+        int created = 0;
+        try {
+            transactionOperations.executeWithoutResult(status -> userRepository.insertAll(newUsers));
+            for (int j = 0; j < newUsers.size(); j++) {
+                results[newIndexes.get(j)] = result(lines.get(newIndexes.get(j)), newUsers.get(j).username(),
+                        UserImportResult.Status.CREATED, null);
+            }
+            created = newUsers.size();
+        } catch (DataIntegrityViolationException e) {
+            // A username created concurrently, or a bad row; retry the chunk one user at a time
+            log.warn("Batch insert conflicted, retrying {} users individually", newUsers.size());
+            for (int j = 0; j < newUsers.size(); j++) {
+                NewUser user = newUsers.get(j);
+                Line line = lines.get(newIndexes.get(j));
+                results[newIndexes.get(j)] = insertOne(line, user);
+                if (results[newIndexes.get(j)].getStatus() == UserImportResult.Status.CREATED) {
+                    created++;
+                }
+            }
+        } catch (DataAccessException e) {
+            log.error("Error importing users", e);
+            for (int j = 0; j < newUsers.size(); j++) {
+                results[newIndexes.get(j)] = result(lines.get(newIndexes.get(j)), newUsers.get(j).username(),
+                        UserImportResult.Status.FAILED, "Failed to create user");
+            }
+        }
+
+        for (UserImportResult result : results) {
+            out.write(result);
+        }
+        out.flush();
+        return created;
+    }
+
+    private UserImportResult insertOne(Line line, NewUser user) {
+        try {
+            transactionOperations.executeWithoutResult(status -> userRepository.insertAll(List.of(user)));
+            return result(line, user.username(), UserImportResult.Status.CREATED, null);
+        } catch (DuplicateKeyException e) {
+            return result(line, user.username(), UserImportResult.Status.CONFLICT,
+                    "Username already exists: " + user.username());
+        } catch (DataIntegrityViolationException e) {
+            return result(line, user.username(), UserImportResult.Status.INVALID, "Invalid user data");
+        } catch (DataAccessException e) {
+            log.error("Error importing user: {}", user.username(), e);
+            return result(line, user.username(), UserImportResult.Status.FAILED, "Failed to create user");
+        }
+    }
+
+    private static UserImportResult result(Line line, String username, UserImportResult.Status status,
+                                           String error) {
+        return new UserImportResult(line.number(), username, status, error);
+    }
+
+    private record Line(long number, String text) {
+    }
+}
@@ -1,18 +1,26 @@
 package com.xudis.auth.service;
 
 import com.xudis.auth.dto.CreateUserRequest;
+import com.xudis.auth.dto.PatchUserRequest;
 import com.xudis.auth.dto.UpdateUserRequest;
+import com.xudis.auth.dto.UserPageResponse;
 import com.xudis.auth.dto.UserResponse;
 import com.xudis.auth.entity.Authority;
 import com.xudis.auth.entity.User;
 import com.xudis.auth.repository.UserRepository;
+import com.xudis.auth.repository.UserRepositoryCustom;
+import com.xudis.auth.security.UserDetailsCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -23,6 +31,10 @@ public class UserManagementService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserDetailsCache userDetailsCache;
+    private final JwtTokenService jwtTokenService;
+
+    private static final int MAX_PAGE_SIZE = 500;
 
     @Transactional
     public UserResponse createUser(CreateUserRequest request) {
@@ -77,28 +89,70 @@ public class UserManagementService {
             user.setEnabled(request.getEnabled());
         }
 
-        // Update authorities if provided (full replacement)
+        // Update authorities if provided (full replacement, applied as a diff)
         if (request.getAuthorities() != null) {
-            // Remove all existing authorities
-            user.getAuthorities().clear();
-            
-            // Flush changes to database to trigger orphan removal
-            userRepository.saveAndFlush(user);
-
-            // Add new authorities
-            for (String authorityName : request.getAuthorities()) {
-                Authority authority = new Authority(user, authorityName);
-                user.getAuthorities().add(authority);
+            Set<String> current = authorityNames(user);
+            Set<String> toRemove = new HashSet<>(current);
+            toRemove.removeAll(request.getAuthorities());
+            Set<String> toAdd = new HashSet<>(request.getAuthorities());
+            toAdd.removeAll(current);
+            if (applyAuthorityChanges(user, toRemove, toAdd)) {
+                log.info("Authorities updated for user: {}", username);
             }
-            log.info("Authorities updated for user: {}", username);
         }
 
-        User updatedUser = userRepository.save(user);
+        User updatedUser = userRepository.saveAndFlush(user);
+        userDetailsCache.evict(user.getUsername());
+        if (Boolean.FALSE.equals(request.getEnabled())) {
+            revokeSessionsAfterCommit(user.getUsername());
+        }
         log.info("User updated successfully: {}", updatedUser.getUsername());
 
         return toUserResponse(updatedUser);
     }
 
+    @Transactional
+    public UserResponse patchUser(String username, PatchUserRequest request) {
+        log.info("Patching user: {}", username);
+
+        Set<String> toAdd = request.getAddAuthorities() != null ? request.getAddAuthorities() : Set.of();
+        Set<String> toRemove = request.getRemoveAuthorities() != null ? request.getRemoveAuthorities() : Set.of();
+        if (toAdd.stream().anyMatch(toRemove::contains)) {
+            throw new IllegalArgumentException("An authority cannot be both added and removed");
+        }
+
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+
+        if (!request.getVersion().equals(user.getVersion())) {
+            throw new UserVersionConflictException("User " + username + " was modified concurrently, current version: "
+                    + user.getVersion());
+        }
+
+        if (request.getPassword() != null && !request.getPassword().isEmpty()) {
+            user.setPassword(passwordEncoder.encode(request.getPassword()));
+            log.info("Password updated for user: {}", username);
+        }
+
+        if (request.getEnabled() != null) {
+            user.setEnabled(request.getEnabled());
+        }
+
+        if (applyAuthorityChanges(user, toRemove, toAdd)) {
+            log.info("Authorities updated for user: {} (+{} -{})", username, toAdd, toRemove);
+        }
+
+        // Flushing here raises a version conflict with a concurrent update before we respond
+        User updatedUser = userRepository.saveAndFlush(user);
+        userDetailsCache.evict(user.getUsername());
+        if (Boolean.FALSE.equals(request.getEnabled())) {
+            revokeSessionsAfterCommit(user.getUsername());
+        }
+        log.info("User patched successfully: {}", updatedUser.getUsername());
+
+        return toUserResponse(updatedUser);
+    }
+
     @Transactional
     public void deleteUser(String username) {
         log.info("Deleting user: {}", username);
@@ -108,9 +162,43 @@ public class UserManagementService {
 
         // The authorities will be automatically deleted due to CascadeType.ALL and orphanRemoval = true
         userRepository.delete(user);
+        userDetailsCache.evict(user.getUsername());
+        revokeSessionsAfterCommit(user.getUsername());
         log.info("User deleted successfully: {}", username);
     }
 
+    // Revokes all refresh tokens of the user; returns how many were still live
+    @Transactional(readOnly = true)
+    public long revokeSessions(String username) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+        // The refresh token index is keyed by the stored username, which may differ in case from the path
+        return jwtTokenService.revokeAllRefreshTokens(user.getUsername());
+    }
+
+    // After commit, so a rolled-back delete or disable does not log the user out
+    private void revokeSessionsAfterCommit(String username) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    revokeSessionsNow(username);
+                }
+            });
+        } else {
+            revokeSessionsNow(username);
+        }
+    }
+
+    private void revokeSessionsNow(String username) {
+        try {
+            jwtTokenService.revokeAllRefreshTokens(username);
+        } catch (Exception e) {
+            // The refresh endpoint also rejects disabled and deleted users
+            log.error("Error revoking refresh tokens of user {}", username, e);
+        }
+    }
+
     @Transactional(readOnly = true)
     public UserResponse getUser(String username) {
         log.info("Getting user: {}", username);
@@ -121,12 +209,64 @@ public class UserManagementService {
         return toUserResponse(user);
     }
 
-    private UserResponse toUserResponse(User user) {
-        Set<String> authorities = user.getAuthorities().stream()
+    @Transactional(readOnly = true)
+    public UserPageResponse listUsers(String sort, String after, Boolean enabled, String authority,
+                                      String usernamePrefix, int limit) {
+        UserRepositoryCustom.SortKey sortKey = switch (sort) {
+            case "id" -> UserRepositoryCustom.SortKey.ID;
+            case "username" -> UserRepositoryCustom.SortKey.USERNAME;
+            default -> throw new IllegalArgumentException("Unsupported sort: " + sort);
+        };
+        if (after != null && sortKey == UserRepositoryCustom.SortKey.ID && !after.matches("\\d{1,18}")) {
+            throw new IllegalArgumentException("Invalid cursor: " + after);
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // One extra row tells whether another page follows
+        List<UserRepositoryCustom.UserSummary> rows = userRepository.findPage(new UserRepositoryCustom.UserPageQuery(
+                sortKey, after, enabled, authority, usernamePrefix, pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        List<UserRepositoryCustom.UserSummary> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            UserRepositoryCustom.UserSummary last = page.get(page.size() - 1);
+            nextCursor = sortKey == UserRepositoryCustom.SortKey.USERNAME ? last.username() : String.valueOf(last.id());
+        }
+
+        List<UserResponse> users = page.stream()
+                .map(user -> new UserResponse(user.username(), user.enabled(), user.authorities(), user.version()))
+                .toList();
+        return new UserPageResponse(users, nextCursor);
+    }
+
+    // Deletes and inserts only the authority rows that change. Returns whether anything changed.
+    private boolean applyAuthorityChanges(User user, Set<String> toRemove, Set<String> toAdd) {
+        boolean changed = user.getAuthorities().removeIf(authority -> toRemove.contains(authority.getAuthority()));
+
+        Set<String> current = authorityNames(user);
+        for (String authorityName : toAdd) {
+            if (!current.contains(authorityName)) {
+                user.getAuthorities().add(new Authority(user, authorityName));
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            // The authorities collection is the inverse side, so changing it alone would not bump the version
+            user.setUpdatedAt(LocalDateTime.now());
+        }
+        return changed;
+    }
+
+    private static Set<String> authorityNames(User user) {
+        return user.getAuthorities().stream()
                 .map(Authority::getAuthority)
                 .collect(Collectors.toSet());
+    }
 
-        return new UserResponse(user.getUsername(), user.getEnabled(), authorities);
+    private UserResponse toUserResponse(User user) {
+        return new UserResponse(user.getUsername(), user.getEnabled(), authorityNames(user), user.getVersion());
     }
 
     // Custom exceptions
@@ -141,4 +281,10 @@ public class UserManagementService {
             super(message);
         }
     }
+
+    public static class UserVersionConflictException extends RuntimeException {
+        public UserVersionConflictException(String message) {
+            super(message);
+        }
+    }
 }
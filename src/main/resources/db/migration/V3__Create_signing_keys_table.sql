@@ -0,0 +1,10 @@
+-- JWT signing key ring shared by all nodes (see SigningKeyRing)
+CREATE TABLE IF NOT EXISTS signing_keys (
+    kid VARCHAR(100) NOT NULL,
+    algorithm VARCHAR(20) NOT NULL,
+    jwk TEXT NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    retired_at TIMESTAMP(6) NULL DEFAULT NULL,
+    PRIMARY KEY (kid),
+    INDEX idx_signing_keys_retired_at (retired_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
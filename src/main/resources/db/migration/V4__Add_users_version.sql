@@ -0,0 +1,2 @@
+-- Optimistic locking for user updates (User.version)
+ALTER TABLE users ADD COLUMN version BIGINT NOT NULL DEFAULT 0 AFTER enabled;
@@ -0,0 +1,17 @@
+-- SHA-256 digests of the token values for indexed lookups (see HashedJdbcOAuth2AuthorizationService).
+-- Generated by MySQL on every insert and update, so JdbcOAuth2AuthorizationService writes stay unchanged.
+ALTER TABLE oauth2_authorization
+    ADD COLUMN state_hash BINARY(32) GENERATED ALWAYS AS (UNHEX(SHA2(state, 256))) STORED,
+    ADD COLUMN authorization_code_hash BINARY(32) GENERATED ALWAYS AS (UNHEX(SHA2(authorization_code_value, 256))) STORED,
+    ADD COLUMN access_token_hash BINARY(32) GENERATED ALWAYS AS (UNHEX(SHA2(access_token_value, 256))) STORED,
+    ADD COLUMN oidc_id_token_hash BINARY(32) GENERATED ALWAYS AS (UNHEX(SHA2(oidc_id_token_value, 256))) STORED,
+    ADD COLUMN refresh_token_hash BINARY(32) GENERATED ALWAYS AS (UNHEX(SHA2(refresh_token_value, 256))) STORED,
+    ADD COLUMN user_code_hash BINARY(32) GENERATED ALWAYS AS (UNHEX(SHA2(user_code_value, 256))) STORED,
+    ADD COLUMN device_code_hash BINARY(32) GENERATED ALWAYS AS (UNHEX(SHA2(device_code_value, 256))) STORED,
+    ADD INDEX idx_oauth2_authorization_state_hash (state_hash),
+    ADD INDEX idx_oauth2_authorization_authorization_code_hash (authorization_code_hash),
+    ADD INDEX idx_oauth2_authorization_access_token_hash (access_token_hash),
+    ADD INDEX idx_oauth2_authorization_oidc_id_token_hash (oidc_id_token_hash),
+    ADD INDEX idx_oauth2_authorization_refresh_token_hash (refresh_token_hash),
+    ADD INDEX idx_oauth2_authorization_user_code_hash (user_code_hash),
+    ADD INDEX idx_oauth2_authorization_device_code_hash (device_code_hash);
@@ -0,0 +1,11 @@
+-- Login, refresh and logout events, appended in batches by AuthAuditLog
+CREATE TABLE IF NOT EXISTS auth_audit (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    occurred_at TIMESTAMP(6) NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    outcome VARCHAR(20) NOT NULL,
+    username VARCHAR(100) NULL,
+    client_address VARCHAR(45) NULL,
+    INDEX idx_auth_audit_occurred_at (occurred_at),
+    INDEX idx_auth_audit_username_occurred_at (username, occurred_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
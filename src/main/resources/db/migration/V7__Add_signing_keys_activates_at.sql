@@ -0,0 +1,2 @@
+-- Next signing key published before it signs (SigningKey.activatesAt); NULL signs from created_at
+ALTER TABLE signing_keys ADD COLUMN activates_at TIMESTAMP(6) NULL DEFAULT NULL AFTER created_at;
@@ -0,0 +1,77 @@
+package com.xudis.auth.config;
+
+import com.xudis.auth.security.BoundedPasswordEncoder;
+import com.xudis.auth.support.EmbeddedRedisInitializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:authorization_server_config;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "auth.password-encoder.threads=1",
+        "auth.password-encoder.queue-capacity=1"
+})
+@ActiveProfiles("embedded")
+@ContextConfiguration(initializers = EmbeddedRedisInitializer.class)
+@AutoConfigureMockMvc
+class AuthorizationServerConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Test
+    void tokenEndpoint_WithBusyPasswordEncoder_Returns429() throws Exception {
+        // Occupy the only thread, then the only queue slot once the thread has taken the first task off the queue
+        ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(passwordEncoder, "executor");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            return release.await(1, TimeUnit.MINUTES);
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.submit(() -> release.await(1, TimeUnit.MINUTES));
+        try {
+            mockMvc.perform(clientCredentials("demo-secret"))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().string("Retry-After", "1"))
+                    .andExpect(jsonPath("$.error").value("temporarily_unavailable"));
+        } finally {
+            release.countDown();
+        }
+
+        mockMvc.perform(clientCredentials("wrong-secret"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.error").value("invalid_client"));
+        mockMvc.perform(clientCredentials("demo-secret"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.access_token").exists());
+    }
+
+    private static MockHttpServletRequestBuilder clientCredentials(String clientSecret) {
+        return post("/oauth2/token")
+                .param("grant_type", "client_credentials")
+                .param("scope", "read")
+                .with(httpBasic("demo-client", clientSecret));
+    }
+}
@@ -0,0 +1,112 @@
+package com.xudis.auth.config;
+
+import com.xudis.auth.dto.CreateUserRequest;
+import com.xudis.auth.service.UserManagementService;
+import com.xudis.auth.support.EmbeddedRedisInitializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.Set;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Security filter chains of the running application, on H2 and an in-process Redis. Observability makes this a
+ * context of its own, so it also gets its own database.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:security_config;MODE=MySQL;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("embedded")
+@ContextConfiguration(initializers = EmbeddedRedisInitializer.class)
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class SecurityConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserManagementService userManagementService;
+
+    @Test
+    void prometheus_RequiresMetricsRole() throws Exception {
+        userManagementService.createUser(new CreateUserRequest("scraper", "password123", true, Set.of("ROLE_METRICS")));
+        userManagementService.createUser(new CreateUserRequest("plainuser", "password123", true, Set.of("ROLE_USER")));
+
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("plainuser", "password123")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "wrong-password")))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "password123")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void introspect_RequiresIntrospectRole() throws Exception {
+        userManagementService.createUser(new CreateUserRequest("gateway", "password123", true, Set.of("ROLE_INTROSPECT")));
+        userManagementService.createUser(new CreateUserRequest("otheruser", "password123", true, Set.of("ROLE_USER")));
+
+        mockMvc.perform(introspect())
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().exists("WWW-Authenticate"));
+        mockMvc.perform(introspect().with(httpBasic("otheruser", "password123")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(introspect().with(httpBasic("gateway", "wrong-password")))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(introspect().with(httpBasic("gateway", "password123")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].active").value(false));
+    }
+
+    @Test
+    void formLogin_IsThrottled() throws Exception {
+        userManagementService.createUser(new CreateUserRequest("formuser", "password123", true, Set.of("ROLE_USER")));
+
+        // username-burst is 5
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(formLogin("formuser", "wrong-password"))
+                    .andExpect(redirectedUrl("/login?error"));
+        }
+        mockMvc.perform(formLogin("FORMUSER", "wrong-password"))
+                .andExpect(redirectedUrl("/login?throttled"))
+                .andExpect(header().exists("Retry-After"));
+        // Throttled before the password is checked
+        mockMvc.perform(formLogin("formuser", "password123"))
+                .andExpect(redirectedUrl("/login?throttled"));
+    }
+
+    private static MockHttpServletRequestBuilder introspect() {
+        return post("/api/auth/introspect/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"tokens\": [\"unknown-token\"]}");
+    }
+
+    private static MockHttpServletRequestBuilder formLogin(String username, String password) {
+        return post("/login")
+                .param("username", username)
+                .param("password", password)
+                .with(csrf())
+                .with(request -> {
+                    request.setRemoteAddr("10.0.0.9");
+                    return request;
+                });
+    }
+}
@@ -0,0 +1,205 @@
+package com.xudis.auth.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xudis.auth.dto.CreateUserRequest;
+import com.xudis.auth.service.UserManagementService;
+import com.xudis.auth.support.EmbeddedRedisInitializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("embedded")
+@ContextConfiguration(initializers = EmbeddedRedisInitializer.class)
+@AutoConfigureMockMvc
+class AuthControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserManagementService userManagementService;
+
+    @Autowired
+    private RegisteredClientRepository registeredClientRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void logout_WithForgedToken_DoesNotRevokeTheRealOne() throws Exception {
+        userManagementService.createUser(new CreateUserRequest("victim", "password123", true, Set.of("ROLE_USER")));
+        String accessToken = login("victim", "password123");
+
+        // Same header and claims (so the same jti), signed with nothing
+        String[] parts = accessToken.split("\\.");
+        String forged = parts[0] + "." + parts[1] + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(new byte[256]);
+        mockMvc.perform(post("/api/auth/logout").header("Authorization", "Bearer " + forged))
+                .andExpect(status().isOk());
+        introspect(accessToken, true);
+
+        mockMvc.perform(post("/api/auth/logout").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isOk());
+        introspect(accessToken, false);
+    }
+
+    @Test
+    void login_WithClientId_RequiresTheClientSecret() throws Exception {
+        userManagementService.createUser(new CreateUserRequest("clientuser", "password123", true, Set.of("ROLE_USER")));
+        registeredClientRepository.save(RegisteredClient.withId(UUID.randomUUID().toString())
+                .clientId("opaque-client")
+                .clientSecret(passwordEncoder.encode("opaque-secret"))
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .tokenSettings(TokenSettings.builder().accessTokenFormat(OAuth2TokenFormat.REFERENCE).build())
+                .build());
+
+        loginAsClient("opaque-client", null).andExpect(status().isUnauthorized());
+        loginAsClient("opaque-client", "wrong-secret").andExpect(status().isUnauthorized());
+        loginAsClient("unknown-client", "opaque-secret").andExpect(status().isUnauthorized());
+        // Registered, but issues JWTs
+        loginAsClient("demo-client", "demo-secret")
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.error").value("Invalid client"))
+                .andExpect(jsonPath("$.accessToken").doesNotExist());
+
+        assertThat(meterRegistry.counter("auth.login", "result", "invalid_client").count()).isEqualTo(4);
+
+        String body = loginAsClient("opaque-client", "opaque-secret")
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(objectMapper.readTree(body).get("accessToken").asText()).hasSize(43);
+
+        // Client secret guesses are throttled per client (username-burst is 5); the user's successful logins and
+        // the right secret gave their attempts back
+        for (int i = 0; i < 3; i++) {
+            loginAsClient("opaque-client", "another-secret").andExpect(status().isUnauthorized());
+        }
+        loginAsClient("opaque-client", "another-secret").andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void refresh_OnlyForTheClientTheTokenWasIssuedTo() throws Exception {
+        userManagementService.createUser(new CreateUserRequest("refreshuser", "password123", true, Set.of("ROLE_USER")));
+        registeredClientRepository.save(RegisteredClient.withId(UUID.randomUUID().toString())
+                .clientId("bound-client")
+                .clientSecret(passwordEncoder.encode("bound-secret"))
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .tokenSettings(TokenSettings.builder().accessTokenFormat(OAuth2TokenFormat.REFERENCE).build())
+                .build());
+        String referenceRefreshToken = objectMapper.readTree(loginAsClient("refreshuser", "bound-client", "bound-secret")
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()).get("refreshToken").asText();
+
+        // No client would trade it for a JWT; none of these consume it
+        refresh(referenceRefreshToken, null, null)
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.error").value("Invalid client"));
+        refresh(referenceRefreshToken, "demo-client", "demo-secret").andExpect(status().isUnauthorized());
+        refresh(referenceRefreshToken, "bound-client", "wrong-secret").andExpect(status().isUnauthorized());
+        assertThat(meterRegistry.counter("auth.refresh", "result", "invalid_client").count()).isEqualTo(3);
+
+        String body = refresh(referenceRefreshToken, "bound-client", "bound-secret")
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode refreshed = objectMapper.readTree(body);
+        assertThat(refreshed.get("accessToken").asText()).hasSize(43);
+        refresh(referenceRefreshToken, "bound-client", "bound-secret")
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.error").value("Invalid or expired refresh token"));
+        // The replacement stays bound to the client
+        refresh(refreshed.get("refreshToken").asText(), null, null).andExpect(status().isUnauthorized());
+
+        // A token issued without a client does not turn into a reference token either
+        String jwtRefreshToken = objectMapper.readTree(mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                Map.of("username", "refreshuser", "password", "password123"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()).get("refreshToken").asText();
+        refresh(jwtRefreshToken, "bound-client", "bound-secret").andExpect(status().isUnauthorized());
+        body = refresh(jwtRefreshToken, null, null)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(objectMapper.readTree(body).get("accessToken").asText()).contains(".");
+    }
+
+    private ResultActions loginAsClient(String clientId, String clientSecret) throws Exception {
+        return loginAsClient("clientuser", clientId, clientSecret);
+    }
+
+    private ResultActions loginAsClient(String username, String clientId, String clientSecret) throws Exception {
+        Map<String, String> request = new HashMap<>();
+        request.put("username", username);
+        request.put("password", "password123");
+        request.put("clientId", clientId);
+        request.put("clientSecret", clientSecret);
+        return mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)));
+    }
+
+    private ResultActions refresh(String refreshToken, String clientId, String clientSecret) throws Exception {
+        Map<String, String> request = new HashMap<>();
+        request.put("refreshToken", refreshToken);
+        request.put("clientId", clientId);
+        request.put("clientSecret", clientSecret);
+        return mockMvc.perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)));
+    }
+
+    private String login(String username, String password) throws Exception {
+        String body = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                Map.of("username", username, "password", password))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode response = objectMapper.readTree(body);
+        return response.get("accessToken").asText();
+    }
+
+    private void introspect(String token, boolean active) throws Exception {
+        mockMvc.perform(post("/api/auth/introspect/batch")
+                        .with(user("gateway").authorities(new SimpleGrantedAuthority("ROLE_INTROSPECT")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("tokens", List.of(token)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].active").value(active));
+    }
+}
@@ -1,33 +1,26 @@
 package com.xudis.auth.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.xudis.auth.controller.AuthController;
-import com.xudis.auth.config.AuthorizationServerConfig;
-import com.xudis.auth.config.RedisConfig;
-import com.xudis.auth.config.RegisteredClientConfig;
 import com.xudis.auth.dto.CreateUserRequest;
+import com.xudis.auth.dto.PatchUserRequest;
 import com.xudis.auth.dto.UpdateUserRequest;
 import com.xudis.auth.dto.UserResponse;
-import com.xudis.auth.service.AuthService;
-import com.xudis.auth.service.JwtTokenService;
 import com.xudis.auth.service.UserManagementService;
+import com.xudis.auth.support.EmbeddedRedisInitializer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
-import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
-import org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.context.annotation.ComponentScan;
-import org.springframework.context.annotation.FilterType;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Set;
 
 import static org.hamcrest.Matchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -38,27 +31,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
                 "spring.datasource.driver-class-name=org.h2.Driver",
                 "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
                 "spring.jpa.hibernate.ddl-auto=create-drop",
-                "spring.flyway.enabled=false",
-                "spring.autoconfigure.exclude=" +
-                        "org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration," +
-                        "org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration"
+                "spring.flyway.enabled=false"
         }
 )
+@ActiveProfiles("embedded")
+@ContextConfiguration(initializers = EmbeddedRedisInitializer.class)
 @AutoConfigureMockMvc
-@ComponentScan(
-        basePackages = "com.xudis.auth",
-        excludeFilters = @ComponentScan.Filter(
-                type = FilterType.ASSIGNABLE_TYPE,
-                classes = {
-                        RegisteredClientConfig.class,
-                        AuthorizationServerConfig.class,
-                        RedisConfig.class,
-                        AuthService.class,
-                        JwtTokenService.class,
-                        AuthController.class
-                }
-        )
-)
 @Transactional
 class UserManagementControllerTest {
 
@@ -235,6 +213,76 @@ class UserManagementControllerTest {
                 .andExpect(jsonPath("$.error").value(containsString("not found")));
     }
 
+    @Test
+    void patchUser_AddsAndRemovesAuthorities() throws Exception {
+        UserResponse created = userManagementService.createUser(new CreateUserRequest(
+                "patchuser", "password123", true, Set.of("ROLE_USER", "ROLE_ADMIN")));
+
+        PatchUserRequest patchRequest = new PatchUserRequest(
+                created.getVersion(), null, null, Set.of("ROLE_AUDITOR"), Set.of("ROLE_ADMIN"));
+
+        mockMvc.perform(patch("/api/users/patchuser")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patchRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.authorities", containsInAnyOrder("ROLE_USER", "ROLE_AUDITOR")))
+                .andExpect(jsonPath("$.version").isNumber());
+    }
+
+    @Test
+    void patchUser_SameAuthorityAddedAndRemoved_Returns400() throws Exception {
+        UserResponse created = userManagementService.createUser(new CreateUserRequest(
+                "patchboth", "password123", true, Set.of("ROLE_USER")));
+
+        PatchUserRequest patchRequest = new PatchUserRequest(
+                created.getVersion(), null, null, Set.of("ROLE_ADMIN"), Set.of("ROLE_ADMIN"));
+
+        mockMvc.perform(patch("/api/users/patchboth")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patchRequest)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void patchUser_StaleVersion_Returns409() throws Exception {
+        UserResponse created = userManagementService.createUser(new CreateUserRequest(
+                "patchstale", "password123", true, Set.of("ROLE_USER")));
+        long version = created.getVersion();
+
+        // Changes a column, so the version moves on
+        mockMvc.perform(patch("/api/users/patchstale")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new PatchUserRequest(version, null, false, null, null))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value((int) version + 1));
+
+        mockMvc.perform(patch("/api/users/patchstale")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new PatchUserRequest(version, null, null, Set.of("ROLE_ADMIN"), null))))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value(containsString("current version: " + (version + 1))));
+
+        mockMvc.perform(get("/api/users/patchstale"))
+                .andExpect(jsonPath("$.authorities", not(hasItem("ROLE_ADMIN"))));
+    }
+
+    @Test
+    void patchUser_WithoutVersion_Returns400() throws Exception {
+        userManagementService.createUser(new CreateUserRequest(
+                "patchnoversion", "password123", true, Set.of("ROLE_USER")));
+
+        mockMvc.perform(patch("/api/users/patchnoversion")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new PatchUserRequest(null, null, null, Set.of("ROLE_ADMIN"), null))))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/users/patchnoversion"))
+                .andExpect(jsonPath("$.authorities", not(hasItem("ROLE_ADMIN"))));
+    }
+
     @Test
     void deleteUser_Success() throws Exception {
         // Create user first
@@ -290,4 +338,27 @@ class UserManagementControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.error").value(containsString("not found")));
     }
+
+    @Test
+    void adminEndpoints_RequireAdminRole() throws Exception {
+        userManagementService.createUser(new CreateUserRequest("useradmin", "password123", true, Set.of("ROLE_ADMIN")));
+        userManagementService.createUser(new CreateUserRequest("plainuser", "password123", true, Set.of("ROLE_USER")));
+
+        mockMvc.perform(get("/api/users"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/users/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"username\":\"mallory\",\"password\":\"password123\"}\n"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(delete("/api/users/plainuser/sessions"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/users").with(httpBasic("plainuser", "password123")))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/api/users").with(httpBasic("useradmin", "password123")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[*].username", hasItem("plainuser")));
+        mockMvc.perform(delete("/api/users/plainuser/sessions").with(httpBasic("useradmin", "password123")))
+                .andExpect(status().isOk());
+    }
 }
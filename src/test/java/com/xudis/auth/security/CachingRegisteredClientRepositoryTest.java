@@ -0,0 +1,144 @@
+package com.xudis.auth.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Registered client cache in front of an in-memory client table.
+ */
+class CachingRegisteredClientRepositoryTest {
+
+    private final Map<String, RegisteredClient> table = new ConcurrentHashMap<>();
+    private final RegisteredClientRepository delegate = mock(RegisteredClientRepository.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final CachingRegisteredClientRepository repository =
+            new CachingRegisteredClientRepository(delegate, redisTemplate, 100, Duration.ofMinutes(10));
+
+    CachingRegisteredClientRepositoryTest() {
+        when(delegate.findById(anyString())).thenAnswer(invocation -> table.get(invocation.<String>getArgument(0)));
+        when(delegate.findByClientId(anyString())).thenAnswer(invocation -> table.values().stream()
+                .filter(client -> client.getClientId().equals(invocation.getArgument(0)))
+                .findFirst().orElse(null));
+        doAnswer(invocation -> {
+            RegisteredClient client = invocation.getArgument(0);
+            table.put(client.getId(), client);
+            return null;
+        }).when(delegate).save(any());
+    }
+
+    @Test
+    void findByClientId_Cached_ServesBothIndexes() {
+        table.put("id-1", client("id-1", "{noop}old-secret"));
+
+        assertThat(repository.findByClientId("client-1").getClientSecret()).isEqualTo("{noop}old-secret");
+        assertThat(repository.findByClientId("client-1").getClientSecret()).isEqualTo("{noop}old-secret");
+        assertThat(repository.findById("id-1").getClientId()).isEqualTo("client-1");
+
+        verify(delegate, times(1)).findByClientId("client-1");
+        verify(delegate, never()).findById("id-1");
+    }
+
+    @Test
+    void findByClientId_Unknown_NotCached() {
+        assertThat(repository.findByClientId("client-1")).isNull();
+        table.put("id-1", client("id-1", "{noop}old-secret"));
+
+        assertThat(repository.findByClientId("client-1")).isNotNull();
+    }
+
+    @Test
+    void save_InvalidatesAndPublishes() {
+        table.put("id-1", client("id-1", "{noop}old-secret"));
+        repository.findByClientId("client-1");
+
+        repository.save(client("id-1", "{noop}new-secret"));
+
+        assertThat(repository.findByClientId("client-1").getClientSecret()).isEqualTo("{noop}new-secret");
+        assertThat(repository.findById("id-1").getClientSecret()).isEqualTo("{noop}new-secret");
+        verify(redisTemplate).convertAndSend(CachingRegisteredClientRepository.CHANNEL, "id-1");
+    }
+
+    @Test
+    void onMessage_SaveOnOtherNode_Invalidates() {
+        table.put("id-1", client("id-1", "{noop}old-secret"));
+        repository.findByClientId("client-1");
+
+        // Another node saved the client and published its id
+        table.put("id-1", client("id-1", "{noop}new-secret"));
+        repository.onMessage(message("id-1"), null);
+
+        assertThat(repository.findByClientId("client-1").getClientSecret()).isEqualTo("{noop}new-secret");
+    }
+
+    @Test
+    void save_DuringLoad_OldRowIsNotCached() {
+        table.put("id-1", client("id-1", "{noop}old-secret"));
+        AtomicBoolean saved = new AtomicBoolean();
+        // The lookup reads the old row, then the secret rotation commits and clears before the lookup caches it
+        when(delegate.findByClientId("client-1")).thenAnswer(invocation -> {
+            RegisteredClient oldRow = table.get("id-1");
+            if (saved.compareAndSet(false, true)) {
+                repository.save(client("id-1", "{noop}new-secret"));
+            }
+            return oldRow;
+        });
+
+        assertThat(repository.findByClientId("client-1").getClientSecret()).isEqualTo("{noop}old-secret");
+
+        assertThat(repository.findByClientId("client-1").getClientSecret()).isEqualTo("{noop}new-secret");
+        assertThat(repository.findById("id-1").getClientSecret()).isEqualTo("{noop}new-secret");
+    }
+
+    @Test
+    void saveOnOtherNode_DuringLoad_OldRowIsNotCached() {
+        table.put("id-1", client("id-1", "{noop}old-secret"));
+        AtomicBoolean saved = new AtomicBoolean();
+        when(delegate.findById("id-1")).thenAnswer(invocation -> {
+            RegisteredClient oldRow = table.get("id-1");
+            if (saved.compareAndSet(false, true)) {
+                table.put("id-1", client("id-1", "{noop}new-secret"));
+                repository.onMessage(message("id-1"), null);
+            }
+            return oldRow;
+        });
+
+        assertThat(repository.findById("id-1").getClientSecret()).isEqualTo("{noop}old-secret");
+
+        assertThat(repository.findById("id-1").getClientSecret()).isEqualTo("{noop}new-secret");
+        assertThat(repository.findByClientId("client-1").getClientSecret()).isEqualTo("{noop}new-secret");
+    }
+
+    private static RegisteredClient client(String id, String clientSecret) {
+        return RegisteredClient.withId(id)
+                .clientId("client-1")
+                .clientSecret(clientSecret)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .build();
+    }
+
+    private static DefaultMessage message(String id) {
+        return new DefaultMessage(CachingRegisteredClientRepository.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                id.getBytes(StandardCharsets.UTF_8));
+    }
+}
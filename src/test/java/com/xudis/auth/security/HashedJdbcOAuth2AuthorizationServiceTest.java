@@ -0,0 +1,107 @@
+package com.xudis.auth.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Digest lookups on H2. The digest columns are generated with H2's HASH instead of MySQL's SHA2, as in V5.
+ */
+class HashedJdbcOAuth2AuthorizationServiceTest {
+
+    private static final String[] TOKEN_COLUMNS = {"state", "authorization_code_value", "access_token_value",
+            "oidc_id_token_value", "refresh_token_value", "user_code_value", "device_code_value"};
+    private static final String[] HASH_COLUMNS = {"state_hash", "authorization_code_hash", "access_token_hash",
+            "oidc_id_token_hash", "refresh_token_hash", "user_code_hash", "device_code_hash"};
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("org/springframework/security/oauth2/server/authorization/oauth2-authorization-schema.sql")
+            .build();
+
+    private final RegisteredClient registeredClient = RegisteredClient.withId(UUID.randomUUID().toString())
+            .clientId("demo-client")
+            .clientSecret("{noop}secret")
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .redirectUri("http://127.0.0.1:8080/callback")
+            .scope("openid")
+            .build();
+
+    private final HashedJdbcOAuth2AuthorizationService authorizationService;
+
+    HashedJdbcOAuth2AuthorizationServiceTest() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        for (int i = 0; i < TOKEN_COLUMNS.length; i++) {
+            jdbcTemplate.execute("ALTER TABLE oauth2_authorization ADD COLUMN " + HASH_COLUMNS[i]
+                    + " BINARY(32) GENERATED ALWAYS AS (HASH('SHA-256', " + TOKEN_COLUMNS[i] + "))");
+        }
+        authorizationService = new HashedJdbcOAuth2AuthorizationService(jdbcTemplate,
+                new InMemoryRegisteredClientRepository(registeredClient));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void save_FindByEachToken() {
+        Instant now = Instant.now();
+        OAuth2Authorization authorization = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(UUID.randomUUID().toString())
+                .principalName("alice")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .authorizedScopes(Set.of("openid"))
+                .attribute(OAuth2ParameterNames.STATE, "state-1")
+                .token(new OAuth2AuthorizationCode("code-1", now, now.plusSeconds(300)))
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-1", now,
+                        now.plusSeconds(3600), Set.of("openid")))
+                .refreshToken(new OAuth2RefreshToken("refresh-1", now, now.plusSeconds(86400)))
+                .build();
+        authorizationService.save(authorization);
+
+        assertThat(authorizationService.findByToken("state-1", new OAuth2TokenType(OAuth2ParameterNames.STATE))
+                .getId()).isEqualTo(authorization.getId());
+        assertThat(authorizationService.findByToken("code-1", new OAuth2TokenType(OAuth2ParameterNames.CODE))
+                .getId()).isEqualTo(authorization.getId());
+        assertThat(authorizationService.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)
+                .getPrincipalName()).isEqualTo("alice");
+        assertThat(authorizationService.findByToken("refresh-1", OAuth2TokenType.REFRESH_TOKEN)
+                .getId()).isEqualTo(authorization.getId());
+        assertThat(authorizationService.findByToken("refresh-1", null).getId()).isEqualTo(authorization.getId());
+        assertThat(authorizationService.findByToken("refresh-1", OAuth2TokenType.ACCESS_TOKEN)).isNull();
+        assertThat(authorizationService.findByToken("unknown", null)).isNull();
+
+        // Updates recompute the digests
+        OAuth2Authorization refreshed = OAuth2Authorization.from(authorization)
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-2", now,
+                        now.plusSeconds(3600), Set.of("openid")))
+                .build();
+        authorizationService.save(refreshed);
+        assertThat(authorizationService.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)).isNull();
+        assertThat(authorizationService.findByToken("access-2", OAuth2TokenType.ACCESS_TOKEN).getId())
+                .isEqualTo(authorization.getId());
+
+        authorizationService.remove(refreshed);
+        assertThat(authorizationService.findByToken("access-2", OAuth2TokenType.ACCESS_TOKEN)).isNull();
+    }
+}
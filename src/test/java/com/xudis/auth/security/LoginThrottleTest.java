@@ -0,0 +1,164 @@
+package com.xudis.auth.security;
+
+import com.github.fppt.jedismock.RedisServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Login throttling against an in-process Redis (jedis-mock) that runs the sliding-window script.
+ */
+class LoginThrottleTest {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void startRedis() throws Exception {
+        redisServer = RedisServer.newRedisServer(0);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(redisServer.getHost(), redisServer.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void acquire_LocalBurstExceeded_ThrowsWithRetryAfter() {
+        LoginThrottle throttle = loginThrottle(3, 100);
+
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire("alice", "10.0.0.1");
+        }
+
+        assertThatThrownBy(() -> throttle.acquire("ALICE", "10.0.0.2"))
+                .isInstanceOfSatisfying(LoginThrottle.LoginThrottledException.class,
+                        e -> assertThat(e.getRetryAfterSeconds()).isBetween(1L, 60L));
+        throttle.acquire("bob", "10.0.0.1");
+    }
+
+    @Test
+    void acquire_SharedWindowExceeded_ThrowsOnEveryNode() {
+        LoginThrottle node1 = loginThrottle(100, 4);
+        LoginThrottle node2 = loginThrottle(100, 4);
+
+        node1.acquire("carol", "10.0.1.1");
+        node2.acquire("carol", "10.0.1.2");
+        node1.acquire("carol", "10.0.1.3");
+        node2.acquire("carol", "10.0.1.4");
+
+        assertThatThrownBy(() -> node1.acquire("carol", "10.0.1.5"))
+                .isInstanceOf(LoginThrottle.LoginThrottledException.class);
+        assertThatThrownBy(() -> node2.acquire("carol", "10.0.1.6"))
+                .isInstanceOf(LoginThrottle.LoginThrottledException.class);
+    }
+
+    @Test
+    void authenticate_Throttled_DoesNotReachDelegate() {
+        AtomicInteger delegated = new AtomicInteger();
+        AuthenticationManager delegate = authentication -> {
+            delegated.incrementAndGet();
+            throw new BadCredentialsException("Bad credentials");
+        };
+        AuthenticationManager manager = new ThrottlingAuthenticationManager(delegate, loginThrottle(2, 100));
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> manager.authenticate(new UsernamePasswordAuthenticationToken("dave", "wrong")))
+                    .isInstanceOf(BadCredentialsException.class);
+        }
+        assertThatThrownBy(() -> manager.authenticate(new UsernamePasswordAuthenticationToken("dave", "wrong")))
+                .isInstanceOf(LoginThrottle.LoginThrottledException.class);
+
+        assertThat(delegated).hasValue(2);
+    }
+
+    @Test
+    void authenticate_SuccessfulLogins_DoNotThrottleOthersOnTheSameAddress() {
+        // A load balancer's worth of logins from one address: burst and window of 3 each
+        LoginThrottle throttle = loginThrottle(3, 3);
+        ReflectionTestUtils.setField(throttle, "ipBurst", 3);
+        ReflectionTestUtils.setField(throttle, "ipWindowLimit", 3L);
+        throttle.init();
+        AuthenticationManager manager = new ThrottlingAuthenticationManager(authentication -> {
+            if (!"secret".equals(authentication.getCredentials())) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            return authentication;
+        }, throttle);
+
+        for (int i = 0; i < 10; i++) {
+            manager.authenticate(login("erin", "secret", "10.0.2.1"));
+        }
+        manager.authenticate(login("frank", "secret", "10.0.2.1"));
+
+        // Failures still count, against the address too
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> manager.authenticate(login("grace", "wrong", "10.0.2.1")))
+                    .isInstanceOf(BadCredentialsException.class);
+        }
+        assertThatThrownBy(() -> manager.authenticate(login("frank", "secret", "10.0.2.1")))
+                .isInstanceOf(LoginThrottle.LoginThrottledException.class);
+        manager.authenticate(login("frank", "secret", "10.0.2.2"));
+    }
+
+    @Test
+    void acquireClient_OnlyFailedSecretChecksCount() {
+        LoginThrottle throttle = loginThrottle(2, 100);
+
+        for (int i = 0; i < 5; i++) {
+            throttle.acquireClient("service-a", "10.0.3.1");
+            throttle.refundClient("service-a", "10.0.3.1");
+        }
+        throttle.acquireClient("service-a", "10.0.3.1");
+        throttle.acquireClient("service-a", "10.0.3.1");
+
+        assertThatThrownBy(() -> throttle.acquireClient("service-a", "10.0.3.1"))
+                .isInstanceOf(LoginThrottle.LoginThrottledException.class);
+        // Separate from the username of the same name
+        throttle.acquire("service-a", "10.0.3.1");
+    }
+
+    private static UsernamePasswordAuthenticationToken login(String username, String password, String remoteAddress) {
+        UsernamePasswordAuthenticationToken authentication =
+                UsernamePasswordAuthenticationToken.unauthenticated(username, password);
+        authentication.setDetails(new WebAuthenticationDetails(remoteAddress, null));
+        return authentication;
+    }
+
+    private static LoginThrottle loginThrottle(int usernameBurst, long usernameWindowLimit) {
+        LoginThrottle throttle = new LoginThrottle(redisTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(throttle, "enabled", true);
+        ReflectionTestUtils.setField(throttle, "usernameBurst", usernameBurst);
+        ReflectionTestUtils.setField(throttle, "usernameInterval", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(throttle, "ipBurst", 100);
+        ReflectionTestUtils.setField(throttle, "ipInterval", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(throttle, "maximumKeys", 1000L);
+        ReflectionTestUtils.setField(throttle, "window", Duration.ofMinutes(15));
+        ReflectionTestUtils.setField(throttle, "usernameWindowLimit", usernameWindowLimit);
+        ReflectionTestUtils.setField(throttle, "ipWindowLimit", 1000L);
+        throttle.init();
+        return throttle;
+    }
+}
@@ -0,0 +1,97 @@
+package com.xudis.auth.security;
+
+import com.xudis.auth.service.SigningKeyRing;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MetadataResponseCacheFilterTest {
+
+    private final SigningKeyRing signingKeyRing = mock(SigningKeyRing.class);
+    private final AtomicInteger rendered = new AtomicInteger();
+    private MetadataResponseCacheFilter filter;
+
+    // Stands in for the authorization server endpoint: renders the current key version
+    private final FilterChain endpoint = (request, response) -> {
+        rendered.incrementAndGet();
+        response.setContentType("application/json;charset=UTF-8");
+        response.getOutputStream().write(("{\"keys\":\"" + signingKeyRing.jwkSetVersion() + "\"}")
+                .getBytes(StandardCharsets.UTF_8));
+    };
+
+    @BeforeEach
+    void setUp() {
+        filter = new MetadataResponseCacheFilter(signingKeyRing, AuthorizationServerSettings.builder().build(),
+                new UrlBasedCorsConfigurationSource());
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "maxAge", Duration.ofMinutes(5));
+        filter.init();
+        when(signingKeyRing.jwkSetVersion()).thenReturn("kid-1");
+    }
+
+    @Test
+    void jwks_ServedFromCacheWithEtagAndNotModified() throws Exception {
+        MockHttpServletResponse first = get("/oauth2/jwks", null);
+        MockHttpServletResponse second = get("/oauth2/jwks", null);
+
+        assertThat(rendered).hasValue(1);
+        assertThat(second.getContentAsString()).isEqualTo(first.getContentAsString()).contains("kid-1");
+        assertThat(second.getContentType()).isEqualTo("application/json;charset=UTF-8");
+        assertThat(second.getHeader("Cache-Control")).isEqualTo("max-age=300, public");
+        String etag = second.getHeader("ETag");
+        assertThat(etag).startsWith("\"").endsWith("\"");
+
+        MockHttpServletResponse notModified = get("/oauth2/jwks", "W/" + etag);
+        assertThat(notModified.getStatus()).isEqualTo(304);
+        assertThat(notModified.getContentAsByteArray()).isEmpty();
+        assertThat(notModified.getHeader("ETag")).isEqualTo(etag);
+        assertThat(rendered).hasValue(1);
+    }
+
+    @Test
+    void jwks_KeyChange_RendersAgainWithNewEtag() throws Exception {
+        get("/oauth2/jwks", null);
+        String etag = get("/oauth2/jwks", null).getHeader("ETag");
+
+        when(signingKeyRing.jwkSetVersion()).thenReturn("kid-1,kid-2");
+        MockHttpServletResponse afterRotation = get("/oauth2/jwks", etag);
+        MockHttpServletResponse cached = get("/oauth2/jwks", etag);
+
+        assertThat(rendered).hasValue(2);
+        assertThat(afterRotation.getStatus()).isEqualTo(200);
+        assertThat(afterRotation.getContentAsString()).contains("kid-1,kid-2");
+        assertThat(cached.getStatus()).isEqualTo(200);
+        assertThat(cached.getHeader("ETag")).isNotEqualTo(etag);
+    }
+
+    @Test
+    void otherPaths_NotCached() throws Exception {
+        get("/api/auth/login", null);
+        get("/api/auth/login", null);
+
+        assertThat(rendered).hasValue(2);
+    }
+
+    private MockHttpServletResponse get(String path, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, endpoint);
+        return response;
+    }
+}
@@ -0,0 +1,112 @@
+package com.xudis.auth.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xudis.auth.support.EmbeddedRedisInitializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Authorization code + PKCE through /oauth2/authorize and /oauth2/token with the Redis authorization store, so
+ * the store sees every lookup the token endpoint makes.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:redis_authorization_code;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "auth.authorization-store.type=redis"
+})
+@ActiveProfiles("embedded")
+@ContextConfiguration(initializers = EmbeddedRedisInitializer.class)
+@AutoConfigureMockMvc
+class RedisAuthorizationCodeFlowTest {
+
+    private static final String REDIRECT_URI = "http://127.0.0.1:8080/authorized";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void authorizationCode_WithPkce_ExchangedOnce() throws Exception {
+        String codeVerifier = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "a-code-verifier-of-at-least-forty-three-characters".getBytes(StandardCharsets.US_ASCII));
+        String codeChallenge = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest(codeVerifier.getBytes(StandardCharsets.US_ASCII)));
+
+        String location = mockMvc.perform(get("/oauth2/authorize")
+                        .queryParam("response_type", "code")
+                        .queryParam("client_id", "demo-client")
+                        .queryParam("redirect_uri", REDIRECT_URI)
+                        .queryParam("scope", "read")
+                        .queryParam("state", "state-1")
+                        .queryParam("code_challenge", codeChallenge)
+                        .queryParam("code_challenge_method", "S256")
+                        .with(user("alice").roles("USER")))
+                .andExpect(status().is3xxRedirection())
+                .andReturn().getResponse().getRedirectedUrl();
+        assertThat(location).startsWith(REDIRECT_URI);
+        MultiValueMap<String, String> query = UriComponentsBuilder.fromUriString(location).build().getQueryParams();
+        assertThat(query.getFirst("state")).isEqualTo("state-1");
+        String code = query.getFirst("code");
+
+        JsonNode tokens = objectMapper.readTree(exchange(code, codeVerifier)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        String accessToken = tokens.get("access_token").asText();
+        introspect(accessToken, true);
+
+        // The issued refresh token works against the authorization saved with the code used
+        JsonNode refreshed = objectMapper.readTree(mockMvc.perform(post("/oauth2/token")
+                        .param("grant_type", "refresh_token")
+                        .param("refresh_token", tokens.get("refresh_token").asText())
+                        .with(httpBasic("demo-client", "demo-secret")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        String refreshedAccessToken = refreshed.get("access_token").asText();
+        introspect(refreshedAccessToken, true);
+
+        // A replay is rejected and revokes what the code was exchanged for
+        exchange(code, codeVerifier)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("invalid_grant"));
+        introspect(refreshedAccessToken, false);
+    }
+
+    private ResultActions exchange(String code, String codeVerifier) throws Exception {
+        return mockMvc.perform(post("/oauth2/token")
+                .param("grant_type", "authorization_code")
+                .param("code", code)
+                .param("redirect_uri", REDIRECT_URI)
+                .param("code_verifier", codeVerifier)
+                .with(httpBasic("demo-client", "demo-secret")));
+    }
+
+    private void introspect(String token, boolean active) throws Exception {
+        mockMvc.perform(post("/oauth2/introspect")
+                        .param("token", token)
+                        .with(httpBasic("demo-client", "demo-secret")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.active").value(active));
+    }
+}
@@ -0,0 +1,160 @@
+package com.xudis.auth.security;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Authorization store against an in-process Redis (jedis-mock).
+ */
+class RedisOAuth2AuthorizationServiceTest {
+
+    private static final OAuth2TokenType CODE = new OAuth2TokenType(OAuth2ParameterNames.CODE);
+    private static final OAuth2TokenType STATE = new OAuth2TokenType(OAuth2ParameterNames.STATE);
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private final RegisteredClient registeredClient = RegisteredClient.withId(UUID.randomUUID().toString())
+            .clientId("demo-client")
+            .clientSecret("{noop}secret")
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+            .redirectUri("http://127.0.0.1:8080/callback")
+            .scope("openid")
+            .build();
+    private final RedisOAuth2AuthorizationService authorizationService = new RedisOAuth2AuthorizationService(
+            redisTemplate, new InMemoryRegisteredClientRepository(registeredClient), Duration.ofMinutes(5));
+
+    @BeforeAll
+    static void startRedis() throws Exception {
+        redisServer = RedisServer.newRedisServer(0);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(redisServer.getHost(), redisServer.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @AfterEach
+    void flush() {
+        redisTemplate.delete(redisTemplate.keys("oauth2_*"));
+    }
+
+    @Test
+    void save_FindByEachToken_ThenRemove() {
+        Instant now = Instant.now();
+        OAuth2Authorization authorization = authorization()
+                .attribute(OAuth2ParameterNames.STATE, "state-1")
+                .token(new OAuth2AuthorizationCode("code-1", now, now.plusSeconds(300)))
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-1", now,
+                        now.plusSeconds(3600), Set.of("openid")))
+                .refreshToken(new OAuth2RefreshToken("refresh-1", now, now.plus(Duration.ofDays(1))))
+                .build();
+        authorizationService.save(authorization);
+
+        String key = "oauth2_authorization:" + authorization.getId();
+        assertThat(redisTemplate.getExpire(key)).isBetween(86390L, 86400L);
+        OAuth2Authorization found = authorizationService.findById(authorization.getId());
+        assertThat(found.getPrincipalName()).isEqualTo("alice");
+        assertThat(found.getAuthorizedScopes()).containsExactly("openid");
+        assertThat(found.getAccessToken().getToken().getScopes()).containsExactly("openid");
+        assertThat(found.getRefreshToken().getToken().getExpiresAt())
+                .isEqualTo(authorization.getRefreshToken().getToken().getExpiresAt().truncatedTo(ChronoUnit.MILLIS));
+
+        assertThat(authorizationService.findByToken("state-1", STATE).getId()).isEqualTo(authorization.getId());
+        assertThat(authorizationService.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN).getId())
+                .isEqualTo(authorization.getId());
+        assertThat(authorizationService.findByToken("refresh-1", OAuth2TokenType.REFRESH_TOKEN).getId())
+                .isEqualTo(authorization.getId());
+        assertThat(authorizationService.findByToken("refresh-1", null).getId()).isEqualTo(authorization.getId());
+        // A token is only found under its own type
+        assertThat(authorizationService.findByToken("refresh-1", OAuth2TokenType.ACCESS_TOKEN)).isNull();
+
+        OAuth2Authorization byCode = authorizationService.findByToken("code-1", CODE);
+        assertThat(byCode.getToken(OAuth2AuthorizationCode.class).isInvalidated()).isFalse();
+
+        authorizationService.remove(authorization);
+        assertThat(authorizationService.findById(authorization.getId())).isNull();
+        assertThat(authorizationService.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN)).isNull();
+        assertThat(authorizationService.findByToken("refresh-1", null)).isNull();
+        assertThat(redisTemplate.keys("oauth2_token:*")).isEmpty();
+    }
+
+    @Test
+    void authorizationCode_RepeatedLookups_ThenInvalidatedCodeStaysFindable() {
+        Instant now = Instant.now();
+        OAuth2AuthorizationCode code = new OAuth2AuthorizationCode("code-2", now, now.plusSeconds(300));
+        OAuth2Authorization authorization = authorization().token(code).build();
+        authorizationService.save(authorization);
+
+        // Client authentication and the code provider both look the code up in one token request
+        assertThat(authorizationService.findByToken("code-2", CODE).getToken(OAuth2AuthorizationCode.class)
+                .isInvalidated()).isFalse();
+        assertThat(authorizationService.findByToken("code-2", CODE).getToken(OAuth2AuthorizationCode.class)
+                .isInvalidated()).isFalse();
+
+        authorizationService.save(OAuth2Authorization.from(authorization).invalidate(code).build());
+
+        // A replay still finds the authorization, with the code used
+        assertThat(authorizationService.findByToken("code-2", CODE).getToken(OAuth2AuthorizationCode.class)
+                .isInvalidated()).isTrue();
+        assertThat(authorizationService.findByToken("code-2", null).getId()).isEqualTo(authorization.getId());
+        assertThat(redisTemplate.getExpire(redisTemplate.keys("oauth2_token:code:*").iterator().next()))
+                .isBetween(290L, 300L);
+        assertThat(authorizationService.findByToken("unknown-code", CODE)).isNull();
+    }
+
+    @Test
+    void expiredTokens_CannotBeFound() throws Exception {
+        Instant issuedAt = Instant.now().minus(Duration.ofHours(2));
+        OAuth2Authorization authorization = authorization()
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-3", issuedAt,
+                        issuedAt.plusSeconds(3600), Set.of("openid")))
+                .build();
+        authorizationService.save(authorization);
+
+        // No index for an expired token; the document itself lives one more second
+        assertThat(authorizationService.findByToken("access-3", OAuth2TokenType.ACCESS_TOKEN)).isNull();
+        assertThat(redisTemplate.getExpire("oauth2_authorization:" + authorization.getId())).isBetween(0L, 1L);
+        Thread.sleep(1100);
+        assertThat(authorizationService.findById(authorization.getId())).isNull();
+    }
+
+    private OAuth2Authorization.Builder authorization() {
+        return OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(UUID.randomUUID().toString())
+                .principalName("alice")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .authorizedScopes(Set.of("openid"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.xudis.auth.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.security.web.savedrequest.DefaultSavedRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionAttributeSerializerTest {
+
+    private final SessionAttributeSerializer serializer =
+            new SessionAttributeSerializer(SessionAttributeSerializerTest.class.getClassLoader());
+
+    @Test
+    void securityAttributes_RoundTripAsJson() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/oauth2/authorize");
+        request.setQueryString("response_type=code&client_id=demo-client&scope=openid");
+        request.setParameter("response_type", "code");
+        request.setParameter("client_id", "demo-client");
+        request.setParameter("scope", "openid");
+        request.setRemoteAddr("10.0.0.1");
+        UsernamePasswordAuthenticationToken authentication = UsernamePasswordAuthenticationToken.authenticated(
+                new User("alice", "", AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN")), null,
+                AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+        authentication.setDetails(new WebAuthenticationDetails(request));
+
+        SecurityContextImpl context = roundTrip(new SecurityContextImpl(authentication), SecurityContextImpl.class);
+        assertThat(context.getAuthentication()).isEqualTo(authentication);
+        assertThat(((User) context.getAuthentication().getPrincipal()).getUsername()).isEqualTo("alice");
+
+        DefaultSavedRequest savedRequest = roundTrip(new DefaultSavedRequest(request), DefaultSavedRequest.class);
+        assertThat(savedRequest.getRedirectUrl()).isEqualTo(
+                "http://localhost/oauth2/authorize?response_type=code&client_id=demo-client&scope=openid");
+        assertThat(savedRequest.getParameterValues("client_id")).containsExactly("demo-client");
+
+        DefaultCsrfToken csrfToken = roundTrip(new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", "token-value"),
+                DefaultCsrfToken.class);
+        assertThat(csrfToken.getToken()).isEqualTo("token-value");
+    }
+
+    @Test
+    void scalars_KeepTheirType() {
+        assertThat(serializer.deserialize(serializer.serialize(1700000000000L))).isEqualTo(1700000000000L);
+        assertThat(serializer.deserialize(serializer.serialize(5L))).isInstanceOf(Long.class).isEqualTo(5L);
+        assertThat(serializer.deserialize(serializer.serialize(1800))).isInstanceOf(Integer.class).isEqualTo(1800);
+        assertThat(serializer.deserialize(serializer.serialize("näme"))).isEqualTo("näme");
+        assertThat(serializer.deserialize(serializer.serialize(true))).isEqualTo(true);
+        assertThat(serializer.serialize(1800)).hasSize(5);
+        assertThat(serializer.deserialize(serializer.serialize(null))).isNull();
+    }
+
+    @Test
+    void otherTypes_UseJdkSerialization_AndExistingJdkValuesStayReadable() {
+        BadCredentialsException exception = new BadCredentialsException("Bad credentials");
+        byte[] bytes = serializer.serialize(exception);
+        assertThat(bytes[0]).isEqualTo((byte) 0xAC);
+        assertThat(serializer.deserialize(bytes)).isInstanceOf(BadCredentialsException.class);
+
+        // An authentication the Jackson allowlist would not read back
+        SecurityContextImpl context = new SecurityContextImpl(new TestingAuthenticationToken("bob", null));
+        assertThat(serializer.serialize(context)[0]).isEqualTo((byte) 0xAC);
+
+        JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+        assertThat(serializer.deserialize(jdkSerializer.serialize(1700000000000L))).isEqualTo(1700000000000L);
+        assertThat(serializer.deserialize(jdkSerializer.serialize(new ArrayList<>(List.of("a"))))).isEqualTo(List.of("a"));
+    }
+
+    private <T> T roundTrip(Object value, Class<T> type) {
+        byte[] bytes = serializer.serialize(value);
+        assertThat(bytes[0]).isEqualTo((byte) '{');
+        return type.cast(serializer.deserialize(bytes));
+    }
+}
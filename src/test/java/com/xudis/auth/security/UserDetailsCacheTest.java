@@ -0,0 +1,118 @@
+package com.xudis.auth.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * User details cache against an in-process Redis (jedis-mock).
+ */
+class UserDetailsCacheTest {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    // Stands in for MySQL, which finds "alice" when asked for "ALICE"
+    private final Map<String, UserDetailsCache.CachedUser> users = new ConcurrentHashMap<>();
+    private final Function<String, UserDetailsCache.CachedUser> loader =
+            username -> users.get(username.toLowerCase(Locale.ROOT));
+
+    @BeforeAll
+    static void startRedis() throws Exception {
+        redisServer = RedisServer.newRedisServer(0);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(redisServer.getHost(), redisServer.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void evict_AfterMixedCaseLogin_DropsTheCachedEntry() {
+        UserDetailsCache cache = userDetailsCache();
+        users.put("alice", new UserDetailsCache.CachedUser("alice", "{noop}old", true, Set.of("ROLE_USER")));
+
+        UserDetails loaded = cache.get("ALICE", loader);
+        assertThat(loaded.getUsername()).isEqualTo("alice");
+        assertThat(redisTemplate.hasKey(UserDetailsCache.KEY_PREFIX + "alice")).isTrue();
+        assertThat(redisTemplate.hasKey(UserDetailsCache.KEY_PREFIX + "ALICE")).isFalse();
+
+        // Disabled through the admin API, which evicts the canonical name
+        users.put("alice", new UserDetailsCache.CachedUser("alice", "{noop}new", false, Set.of("ROLE_USER")));
+        cache.evict("alice");
+
+        assertThat(cache.get("ALICE", loader).isEnabled()).isFalse();
+        assertThat(cache.get("Alice", loader).getPassword()).isEqualTo("{noop}new");
+        redisTemplate.delete(UserDetailsCache.KEY_PREFIX + "alice");
+    }
+
+    @Test
+    void evict_DuringLoad_OldRowIsNotCached() {
+        UserDetailsCache cache = userDetailsCache();
+        users.put("bob", new UserDetailsCache.CachedUser("bob", "{noop}old", true, Set.of("ROLE_USER")));
+
+        // The load reads the old row, then the disable commits and evicts before the load writes back
+        UserDetails loaded = cache.get("bob", username -> {
+            UserDetailsCache.CachedUser oldRow = loader.apply(username);
+            users.put("bob", new UserDetailsCache.CachedUser("bob", "{noop}old", false, Set.of("ROLE_USER")));
+            cache.evict("bob");
+            return oldRow;
+        });
+
+        assertThat(loaded.isEnabled()).isTrue();
+        assertThat(redisTemplate.opsForHash().hasKey(UserDetailsCache.KEY_PREFIX + "bob", "user")).isFalse();
+        assertThat(cache.get("bob", loader).isEnabled()).isFalse();
+        redisTemplate.delete(UserDetailsCache.KEY_PREFIX + "bob");
+    }
+
+    @Test
+    void evictOnOtherNode_DuringLoad_OldRowIsNotCached() {
+        UserDetailsCache node1 = userDetailsCache();
+        UserDetailsCache node2 = userDetailsCache();
+        users.put("carol", new UserDetailsCache.CachedUser("carol", "{noop}old", true, Set.of("ROLE_USER")));
+
+        // No pub/sub here, so node1 only learns about the eviction from the generation in Redis
+        node1.get("carol", username -> {
+            UserDetailsCache.CachedUser oldRow = loader.apply(username);
+            users.put("carol", new UserDetailsCache.CachedUser("carol", "{noop}new", true, Set.of("ROLE_USER")));
+            node2.evict("carol");
+            return oldRow;
+        });
+
+        assertThat(node1.get("carol", loader).getPassword()).isEqualTo("{noop}new");
+        assertThat(node2.get("carol", loader).getPassword()).isEqualTo("{noop}new");
+        redisTemplate.delete(UserDetailsCache.KEY_PREFIX + "carol");
+    }
+
+    private static UserDetailsCache userDetailsCache() {
+        UserDetailsCache cache = new UserDetailsCache(redisTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "maximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "localTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cache, "redisTtl", Duration.ofMinutes(10));
+        cache.init();
+        return cache;
+    }
+}
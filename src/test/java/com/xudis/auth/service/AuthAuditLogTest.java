@@ -0,0 +1,159 @@
+package com.xudis.auth.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Audit log writer against the V6 table on H2 (MySQL mode), and the ring buffer under concurrent producers.
+ */
+class AuthAuditLogTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private AuthAuditLog auditLog;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:audit_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V6__Create_auth_audit_table.sql"))
+                .execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (auditLog != null) {
+            auditLog.shutdown();
+        }
+    }
+
+    @Test
+    void fullBatch_WrittenBeforeFlushInterval() throws Exception {
+        auditLog = auditLog(64, 10, AuthAuditLog.OverflowPolicy.DROP);
+        for (int i = 0; i < 25; i++) {
+            auditLog.record(AuthAuditLog.EventType.LOGIN, "success", "user" + i);
+        }
+
+        // Two full batches wake the writer; the flush interval is a minute. Events queued while it writes the
+        // first batch may go out with the second one
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (auditLog.getWrittenCount() < 20 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(auditLog.getWrittenCount()).isBetween(20L, 25L);
+
+        // Anything left is flushed on shutdown
+        auditLog.shutdown();
+        assertThat(rowCount()).isEqualTo(25);
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT event_type, outcome, username, client_address FROM auth_audit WHERE username = 'user24'");
+        assertThat(row).containsEntry("EVENT_TYPE", "LOGIN").containsEntry("OUTCOME", "success");
+        assertThat(row.get("CLIENT_ADDRESS")).isNull();
+    }
+
+    @Test
+    void bufferFull_DropPolicy_CountsDroppedEvents() {
+        // Batch larger than the buffer: the writer only wakes on the flush interval
+        auditLog = auditLog(4, 100, AuthAuditLog.OverflowPolicy.DROP);
+        for (int i = 0; i < 10; i++) {
+            auditLog.record(AuthAuditLog.EventType.LOGOUT, "success", "user");
+        }
+
+        assertThat(auditLog.getDroppedCount()).isEqualTo(6);
+        auditLog.shutdown();
+        assertThat(rowCount()).isEqualTo(4);
+    }
+
+    @Test
+    void bufferFull_CallerRunsPolicy_WritesInline() {
+        auditLog = auditLog(4, 100, AuthAuditLog.OverflowPolicy.CALLER_RUNS);
+        for (int i = 0; i < 10; i++) {
+            auditLog.record(AuthAuditLog.EventType.REFRESH, "failure", null);
+        }
+
+        assertThat(rowCount()).isEqualTo(6);
+        auditLog.shutdown();
+        assertThat(rowCount()).isEqualTo(10);
+        assertThat(auditLog.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void ringBuffer_ConcurrentProducers_DeliversEachElementOnceInOrder() throws Exception {
+        AuditRingBuffer<long[]> buffer = new AuditRingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 10_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (buffer.offer(new long[]{producer, i}) < 0) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            threads.forEach(t -> {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            done.set(true);
+        });
+        waiter.start();
+
+        long[] next = new long[producers];
+        List<long[]> drained = new ArrayList<>();
+        int received = 0;
+        while (!done.get() || buffer.size() > 0) {
+            if (buffer.drainTo(drained, 16) == 0) {
+                Thread.yield();
+            }
+            for (long[] element : drained) {
+                assertThat(element[1]).isEqualTo(next[(int) element[0]]++);
+            }
+            received += drained.size();
+            drained.clear();
+        }
+
+        assertThat(received).isEqualTo(producers * perProducer);
+        assertThat(buffer.size()).isZero();
+    }
+
+    private AuthAuditLog auditLog(int bufferSize, int batchSize, AuthAuditLog.OverflowPolicy overflowPolicy) {
+        AuthAuditLog auditLog = new AuthAuditLog(jdbcTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(auditLog, "enabled", true);
+        ReflectionTestUtils.setField(auditLog, "bufferSize", bufferSize);
+        ReflectionTestUtils.setField(auditLog, "batchSize", batchSize);
+        ReflectionTestUtils.setField(auditLog, "flushInterval", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(auditLog, "overflowPolicy", overflowPolicy);
+        auditLog.init();
+        return auditLog;
+    }
+
+    private int rowCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM auth_audit", Integer.class);
+    }
+}
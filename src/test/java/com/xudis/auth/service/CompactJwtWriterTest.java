@@ -0,0 +1,82 @@
+package com.xudis.auth.service;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.Ed25519Signer;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactJwtWriterTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"RS256", "ES256", "EdDSA"})
+    void write_TokenVerifiesAndCarriesClaims(String algorithmName) throws Exception {
+        JWSAlgorithm algorithm = JWSAlgorithm.parse(algorithmName);
+        JWK key;
+        JWSSigner signer = null;
+        JWSVerifier verifier;
+        if (JWSAlgorithm.RS256.equals(algorithm)) {
+            RSAKey rsaKey = new RSAKeyGenerator(2048).keyID("kid-1").generate();
+            key = rsaKey;
+            verifier = new RSASSAVerifier(rsaKey);
+        } else if (JWSAlgorithm.ES256.equals(algorithm)) {
+            ECKey ecKey = new ECKeyGenerator(Curve.P_256).keyID("kid-1").generate();
+            key = ecKey;
+            verifier = new ECDSAVerifier(ecKey);
+        } else {
+            OctetKeyPair keyPair = new OctetKeyPairGenerator(Curve.Ed25519).keyID("kid-1").generate();
+            key = keyPair;
+            signer = new Ed25519Signer(keyPair);
+            verifier = new Ed25519Verifier(keyPair.toPublicJWK());
+        }
+        JWSHeader header = new JWSHeader.Builder(algorithm).keyID("kid-1").build();
+        SigningKeyRing.ActiveKey activeKey = new SigningKeyRing.ActiveKey("kid-1", algorithm, signer, Instant.now(),
+                header, header.toBase64URL().toString().getBytes(StandardCharsets.US_ASCII),
+                JcaTokenSigner.of(algorithm, key));
+        Timer signTimer = new SimpleMeterRegistry().timer("auth.jwt.sign");
+
+        // Quotes, backslashes, control and non-ASCII characters must survive the hand-written JSON
+        String subject = "us\"er\\名\n";
+        String jti = CompactJwtWriter.randomJti();
+        String token = CompactJwtWriter.write(activeKey, signTimer, subject, "http://localhost:9000",
+                1_700_000_000L, 1_700_003_600L, jti, AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+
+        SignedJWT jwt = SignedJWT.parse(token);
+        assertThat(jwt.verify(verifier)).isTrue();
+        assertThat(jwt.getHeader().getAlgorithm()).isEqualTo(algorithm);
+        assertThat(jwt.getHeader().getKeyID()).isEqualTo("kid-1");
+        JWTClaimsSet claims = jwt.getJWTClaimsSet();
+        assertThat(claims.getSubject()).isEqualTo(subject);
+        assertThat(claims.getIssuer()).isEqualTo("http://localhost:9000");
+        assertThat(claims.getIssueTime().toInstant()).isEqualTo(Instant.ofEpochSecond(1_700_000_000L));
+        assertThat(claims.getExpirationTime().toInstant()).isEqualTo(Instant.ofEpochSecond(1_700_003_600L));
+        assertThat(claims.getJWTID()).isEqualTo(jti);
+        assertThat(claims.getStringClaim("scope")).isEqualTo("ROLE_USER,ROLE_ADMIN");
+        assertThat(UUID.fromString(jti).version()).isEqualTo(4);
+        assertThat(signTimer.count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,134 @@
+package com.xudis.auth.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.xudis.auth.dto.TokenIntrospection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Opaque access tokens whose claims live in an in-process Redis (jedis-mock).
+ */
+class ReferenceTokenTest {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+    private static JwtTokenService jwtTokenService;
+    private static JwtTokenService otherNode;
+
+    private final Authentication authentication = UsernamePasswordAuthenticationToken.authenticated(
+            "alice", null, AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+
+    @BeforeAll
+    static void startRedis() throws Exception {
+        redisServer = RedisServer.newRedisServer(0);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(redisServer.getHost(), redisServer.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+
+        jwtTokenService = jwtTokenService();
+        otherNode = jwtTokenService();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        jwtTokenService.shutdown();
+        otherNode.shutdown();
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void referenceToken_IntrospectsToStoredClaims() {
+        String token = jwtTokenService.generateReferenceToken(authentication, "internal-service");
+
+        assertThat(token).hasSize(43).doesNotContain(".");
+        Set<String> keys = redisTemplate.keys("reference_token:*");
+        assertThat(keys).hasSize(1);
+        assertThat(redisTemplate.getExpire(keys.iterator().next())).isBetween(3590L, 3600L);
+
+        assertThat(jwtTokenService.validateToken(token)).isTrue();
+        List<TokenIntrospection> results = jwtTokenService.introspectAll(List.of(token, "unknown-token"));
+        assertThat(results.get(0).isActive()).isTrue();
+        assertThat(results.get(0).getClaims())
+                .containsEntry("sub", "alice")
+                .containsEntry("scope", "ROLE_USER,ROLE_ADMIN")
+                .containsEntry("client_id", "internal-service")
+                .containsKey("jti");
+        assertThat(results.get(1).isActive()).isFalse();
+        redisTemplate.delete(keys);
+    }
+
+    @Test
+    void introspectAll_UncachedReferenceTokens_ReadInOneRoundTrip() {
+        List<String> tokens = List.of(
+                jwtTokenService.generateReferenceToken(authentication, "internal-service"),
+                jwtTokenService.generateReferenceToken(authentication, "internal-service"),
+                jwtTokenService.generateReferenceToken(authentication, "internal-service"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JwtTokenService reader = jwtTokenService(meterRegistry);
+        try {
+            List<TokenIntrospection> results = reader.introspectAll(tokens);
+
+            assertThat(results).allMatch(TokenIntrospection::isActive);
+            assertThat(meterRegistry.find("auth.redis").tag("operation", "introspect.mget").timer().count())
+                    .isEqualTo(1);
+            assertThat(meterRegistry.find("auth.redis").tag("operation", "reference.get").timer()).isNull();
+            // Now cached on the reader
+            assertThat(reader.validateToken(tokens.get(0))).isTrue();
+            assertThat(meterRegistry.find("auth.redis").tag("operation", "reference.get").timer()).isNull();
+        } finally {
+            reader.shutdown();
+            redisTemplate.delete(redisTemplate.keys("reference_token:*"));
+        }
+    }
+
+    @Test
+    void blacklistToken_RevokesReferenceToken() {
+        String token = jwtTokenService.generateReferenceToken(authentication, "internal-service");
+        // The other node now holds the claims in its local cache
+        assertThat(otherNode.validateToken(token)).isTrue();
+
+        assertThat(jwtTokenService.blacklistToken(token)).isEqualTo("alice");
+
+        assertThat(redisTemplate.keys("reference_token:*")).isEmpty();
+        assertThat(jwtTokenService.validateToken(token)).isFalse();
+        assertThat(otherNode.validateToken(token)).isFalse();
+        assertThat(otherNode.introspectAll(List.of(token)).get(0).isActive()).isFalse();
+    }
+
+    // The Bloom filter is never built, so every blacklist check goes to Redis
+    private static JwtTokenService jwtTokenService() {
+        return jwtTokenService(new SimpleMeterRegistry());
+    }
+
+    private static JwtTokenService jwtTokenService(MeterRegistry meterRegistry) {
+        JwtTokenService service = new JwtTokenService(redisTemplate, new TokenBlacklistFilter(redisTemplate), null,
+                meterRegistry);
+        ReflectionTestUtils.setField(service, "issuer", "http://localhost:9000");
+        ReflectionTestUtils.setField(service, "tokenValiditySeconds", 3600L);
+        ReflectionTestUtils.setField(service, "verifiedTokenCacheMaximumSize", 100L);
+        ReflectionTestUtils.setField(service, "introspectionThreads", 2);
+        ReflectionTestUtils.setField(service, "introspectionQueueCapacity", 10);
+        ReflectionTestUtils.setField(service, "introspectionMaxBatchSize", 100);
+        service.init();
+        return service;
+    }
+}
@@ -0,0 +1,150 @@
+package com.xudis.auth.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Refresh token rotation against an in-process Redis (jedis-mock) that runs the Lua script.
+ */
+class RefreshTokenRotationTest {
+
+    private static final int CONCURRENT_REFRESHES = 32;
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+    private static JwtTokenService jwtTokenService;
+
+    @BeforeAll
+    static void startRedis() throws Exception {
+        redisServer = RedisServer.newRedisServer(0);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(redisServer.getHost(), redisServer.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+
+        jwtTokenService = new JwtTokenService(redisTemplate, null, null, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtTokenService, "refreshTokenValiditySeconds", 3600L);
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void rotateRefreshToken_ReplacesToken() {
+        String refreshToken = jwtTokenService.generateRefreshToken("alice", null);
+
+        JwtTokenService.RotatedRefreshToken rotated = rotate(refreshToken);
+
+        assertThat(rotated.username()).isEqualTo("alice");
+        assertThat(rotated.refreshToken()).isNotEqualTo(refreshToken);
+        assertThat(redisTemplate.hasKey("refresh_token:" + refreshToken)).isFalse();
+        assertThat(redisTemplate.opsForHash().get("refresh_token:" + rotated.refreshToken(), "username"))
+                .isEqualTo("alice");
+        assertThat(redisTemplate.getExpire("refresh_token:" + rotated.refreshToken())).isBetween(3590L, 3600L);
+    }
+
+    @Test
+    void rotateRefreshToken_KeepsTheClient() {
+        String refreshToken = jwtTokenService.generateRefreshToken("alice", "reference-client");
+        assertThat(jwtTokenService.findRefreshToken(refreshToken))
+                .isEqualTo(new JwtTokenService.RefreshTokenOwner("alice", "reference-client"));
+
+        String rotated = rotate(refreshToken).refreshToken();
+
+        assertThat(jwtTokenService.findRefreshToken(rotated))
+                .isEqualTo(new JwtTokenService.RefreshTokenOwner("alice", "reference-client"));
+        assertThat(jwtTokenService.findRefreshToken(rotate(rotated).refreshToken()).clientId())
+                .isEqualTo("reference-client");
+        assertThat(jwtTokenService.findRefreshToken(jwtTokenService.generateRefreshToken("alice", null)).clientId())
+                .isNull();
+    }
+
+    @Test
+    void rotateRefreshToken_RejectsReuseAndUnknownTokens() {
+        String refreshToken = jwtTokenService.generateRefreshToken("alice", null);
+
+        assertThat(rotate(refreshToken)).isNotNull();
+        assertThat(rotate(refreshToken)).isNull();
+        assertThat(rotate("unknown")).isNull();
+    }
+
+    @Test
+    void revokeAllRefreshTokens_RevokesOnlyThatUsersTokens() {
+        String first = jwtTokenService.generateRefreshToken("bob", null);
+        String second = jwtTokenService.generateRefreshToken("bob", null);
+        String rotated = rotate(second).refreshToken();
+        String other = jwtTokenService.generateRefreshToken("carol", null);
+
+        assertThat(redisTemplate.opsForZSet().range("user_refresh_tokens:bob", 0, -1))
+                .containsExactlyInAnyOrder(first, rotated);
+
+        assertThat(jwtTokenService.revokeAllRefreshTokens("bob")).isEqualTo(2);
+        assertThat(rotate(first)).isNull();
+        assertThat(rotate(rotated)).isNull();
+        assertThat(redisTemplate.hasKey("user_refresh_tokens:bob")).isFalse();
+        assertThat(rotate(other)).isNotNull();
+        assertThat(jwtTokenService.revokeAllRefreshTokens("bob")).isZero();
+    }
+
+    @Test
+    void rotateRefreshToken_ConcurrentReuse_OnlyOneSucceeds() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_REFRESHES);
+        try {
+            for (int round = 0; round < 20; round++) {
+                String refreshToken = jwtTokenService.generateRefreshToken("user" + round, null);
+                // Every request read the owner before any of them rotated
+                JwtTokenService.RefreshTokenOwner owner = jwtTokenService.findRefreshToken(refreshToken);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<JwtTokenService.RotatedRefreshToken>> results = new ArrayList<>();
+                for (int i = 0; i < CONCURRENT_REFRESHES; i++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return jwtTokenService.rotateRefreshToken(refreshToken, owner);
+                    }));
+                }
+                start.countDown();
+
+                List<JwtTokenService.RotatedRefreshToken> successes = new ArrayList<>();
+                for (Future<JwtTokenService.RotatedRefreshToken> result : results) {
+                    successes.add(result.get());
+                }
+                successes.removeIf(Objects::isNull);
+
+                assertThat(successes).hasSize(1);
+                assertThat(successes.get(0).username()).isEqualTo("user" + round);
+                assertThat(redisTemplate.keys("refresh_token:*"))
+                        .contains("refresh_token:" + successes.get(0).refreshToken())
+                        .doesNotContain("refresh_token:" + refreshToken);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static JwtTokenService.RotatedRefreshToken rotate(String refreshToken) {
+        JwtTokenService.RefreshTokenOwner owner = jwtTokenService.findRefreshToken(refreshToken);
+        return owner != null ? jwtTokenService.rotateRefreshToken(refreshToken, owner) : null;
+    }
+}
@@ -0,0 +1,166 @@
+package com.xudis.auth.service;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.xudis.auth.entity.SigningKey;
+import com.xudis.auth.repository.SigningKeyRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Encryption of the stored private keys and key rotation across nodes, against an in-memory signing_keys table.
+ */
+class SigningKeyRingTest {
+
+    private final Map<String, SigningKey> table = new ConcurrentHashMap<>();
+    private final SigningKeyRepository repository = mock(SigningKeyRepository.class);
+
+    SigningKeyRingTest() {
+        when(repository.findAll()).thenAnswer(invocation -> List.copyOf(table.values()));
+        when(repository.findPublished(any())).thenAnswer(invocation -> List.copyOf(table.values()));
+        when(repository.save(any())).thenAnswer(invocation -> {
+            SigningKey key = invocation.getArgument(0);
+            table.put(key.getKid(), copy(key));
+            return key;
+        });
+        when(repository.retire(anyString(), any())).thenAnswer(invocation -> {
+            SigningKey key = table.get(invocation.<String>getArgument(0));
+            if (key == null || key.getRetiredAt() != null) {
+                return 0;
+            }
+            key.setRetiredAt(invocation.getArgument(1));
+            return 1;
+        });
+        when(repository.encrypt(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            SigningKey key = table.get(invocation.<String>getArgument(0));
+            if (key == null || !key.getJwk().equals(invocation.getArgument(1))) {
+                return 0;
+            }
+            key.setJwk(invocation.getArgument(2));
+            return 1;
+        });
+    }
+
+    @Test
+    void encryptionKey_PrivateParametersNotStoredInPlaintext() {
+        String encryptionKey = randomKey();
+        SigningKeyRing ring = ring(encryptionKey);
+
+        assertThat(table).hasSize(1);
+        String stored = table.values().iterator().next().getJwk();
+        assertThat(stored).doesNotStartWith("{").doesNotContain("\"d\"");
+
+        // Another node with the same key signs with the same active key
+        assertThat(ring(encryptionKey).activeKey().kid()).isEqualTo(ring.activeKey().kid());
+        assertThat(table.values().iterator().next().getJwk()).isEqualTo(stored);
+
+        assertThatThrownBy(() -> ring(randomKey())).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> ring("")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void plaintextKeys_EncryptedOnStartupWithKey() {
+        String kid = ring("").activeKey().kid();
+        assertThat(table.get(kid).getJwk()).startsWith("{").contains("\"d\"");
+
+        String encryptionKey = randomKey();
+        SigningKeyRing ring = ring(encryptionKey);
+
+        assertThat(ring.activeKey().kid()).isEqualTo(kid);
+        assertThat(table.get(kid).getJwk()).doesNotStartWith("{").doesNotContain("\"d\"");
+    }
+
+    @Test
+    void encryptedKey_MovedToAnotherRow_Rejected() {
+        String encryptionKey = randomKey();
+        String kid = ring(encryptionKey).activeKey().kid();
+
+        SigningKey original = table.get(kid);
+        table.put("other", new SigningKey("other", original.getAlgorithm(), original.getJwk(),
+                Instant.now(), null, null));
+
+        assertThatThrownBy(() -> ring(encryptionKey)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("other");
+    }
+
+    @Test
+    void rotate_NextKeyPublishedOnOtherNodesBeforeItSigns() throws Exception {
+        // Rotation due at once; the next key signs one refresh interval (plus a zero metadata max-age) later
+        SigningKeyRing ring = ring("", Duration.ZERO, Duration.ofSeconds(1));
+        SigningKeyRing otherNode = ring("", Duration.ZERO, Duration.ofSeconds(1));
+        String kid = ring.activeKey().kid();
+
+        ring.refresh();
+        String nextKid = table.keySet().stream().filter(key -> !key.equals(kid)).findFirst().orElseThrow();
+        assertThat(ring.activeKey().kid()).isEqualTo(kid);
+
+        // The other node's periodic reload publishes the next key while both still sign with the current one
+        otherNode.refresh();
+        assertThat(table).hasSize(2);
+        assertThat(jwk(otherNode, nextKid)).isNotNull();
+        assertThat(jwk(otherNode, nextKid).isPrivate()).isFalse();
+        assertThat(otherNode.activeKey().kid()).isEqualTo(kid);
+        assertThat(ring.activeKey().kid()).isEqualTo(kid);
+
+        Thread.sleep(1100);
+
+        assertThat(ring.activeKey().kid()).isEqualTo(nextKid);
+        assertThat(otherNode.activeKey().kid()).isEqualTo(nextKid);
+        assertThat(jwk(ring, nextKid).isPrivate()).isTrue();
+        // The previous key stays published, public only, for its grace period
+        assertThat(jwk(ring, kid).isPrivate()).isFalse();
+    }
+
+    private static JWK jwk(SigningKeyRing ring, String kid) throws Exception {
+        List<JWK> jwks = ring.jwkSource().get(new JWKSelector(new JWKMatcher.Builder().keyID(kid).build()), null);
+        return jwks.isEmpty() ? null : jwks.get(0);
+    }
+
+    private SigningKeyRing ring(String encryptionKey) {
+        return ring(encryptionKey, Duration.ofDays(7), Duration.ofSeconds(60));
+    }
+
+    private SigningKeyRing ring(String encryptionKey, Duration rotationInterval, Duration refreshInterval) {
+        SigningKeyRing ring = new SigningKeyRing(repository, TransactionOperations.withoutTransaction());
+        ReflectionTestUtils.setField(ring, "signingAlgorithm", JWSAlgorithm.RS256.getName());
+        ReflectionTestUtils.setField(ring, "algorithms", new ArrayList<String>());
+        ReflectionTestUtils.setField(ring, "rotationInterval", rotationInterval);
+        ReflectionTestUtils.setField(ring, "gracePeriod", Duration.ofDays(1));
+        ReflectionTestUtils.setField(ring, "minReloadInterval", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(ring, "refreshIntervalMs", refreshInterval.toMillis());
+        ReflectionTestUtils.setField(ring, "metadataMaxAge", Duration.ZERO);
+        ReflectionTestUtils.setField(ring, "encryptionKey", encryptionKey);
+        ring.init();
+        return ring;
+    }
+
+    private static SigningKey copy(SigningKey key) {
+        return new SigningKey(key.getKid(), key.getAlgorithm(), key.getJwk(), key.getCreatedAt(),
+                key.getActivatesAt(), key.getRetiredAt());
+    }
+
+    private static String randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return Base64.getEncoder().encodeToString(key);
+    }
+}
@@ -0,0 +1,59 @@
+package com.xudis.auth.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Blacklist filter against an in-process Redis (jedis-mock).
+ */
+class TokenBlacklistFilterTest {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void startRedis() throws Exception {
+        redisServer = RedisServer.newRedisServer(0);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(redisServer.getHost(), redisServer.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void resubscribe_RebuildsFromRedis() throws Exception {
+        TokenBlacklistFilter filter = new TokenBlacklistFilter(redisTemplate);
+        ReflectionTestUtils.setField(filter, "expectedInsertions", 1000L);
+        ReflectionTestUtils.setField(filter, "falsePositiveProbability", 0.001);
+        filter.rebuild();
+
+        // Blacklisted by another node while this one's subscription was down
+        redisTemplate.opsForValue().set(JwtTokenService.TOKEN_BLACKLIST_PREFIX + "lost-jti", "1");
+        assertThat(filter.mightContain("lost-jti")).isFalse();
+
+        filter.onChannelSubscribed(TokenBlacklistFilter.CHANNEL.getBytes(StandardCharsets.UTF_8), 1);
+        for (int i = 0; i < 50 && !filter.mightContain("lost-jti"); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(filter.mightContain("lost-jti")).isTrue();
+        redisTemplate.delete(JwtTokenService.TOKEN_BLACKLIST_PREFIX + "lost-jti");
+    }
+}
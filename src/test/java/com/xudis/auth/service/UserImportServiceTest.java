@@ -0,0 +1,96 @@
+package com.xudis.auth.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xudis.auth.dto.UserImportResult;
+import com.xudis.auth.repository.UserRepository;
+import com.xudis.auth.repository.UserRepositoryCustom.NewUser;
+import com.xudis.auth.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserImportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final BoundedPasswordEncoder passwordEncoder = new BoundedPasswordEncoder(
+            NoOpPasswordEncoder.getInstance(), 1, 10, Duration.ofSeconds(1), new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        passwordEncoder.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void usernamesDifferingOnlyInCase_ReportedAsConflicts() throws Exception {
+        // Like MySQL, finds "bob" when asked for "Bob"
+        when(userRepository.findExistingUsernames(anyCollection())).thenAnswer(invocation ->
+                ((Collection<String>) invocation.getArgument(0)).stream()
+                        .filter(username -> username.equalsIgnoreCase("bob"))
+                        .map(username -> "bob")
+                        .collect(Collectors.toSet()));
+
+        List<UserImportResult> results = importUsers("""
+                {"username":"Bob","password":"password123"}
+                {"username":"carol","password":"password123"}
+                {"username":"CAROL","password":"password123"}
+                """);
+
+        assertThat(results).extracting(UserImportResult::getStatus).containsExactly(
+                UserImportResult.Status.CONFLICT, UserImportResult.Status.CREATED, UserImportResult.Status.CONFLICT);
+        assertThat(results.get(0).getError()).isEqualTo("Username already exists: Bob");
+        assertThat(results.get(2).getError()).isEqualTo("Duplicate username in batch");
+        // One batch insert, no fallback to single rows
+        verify(userRepository, times(1)).insertAll(any());
+        verify(userRepository).insertAll(List.of(new NewUser("carol", "password123", true, Set.of("ROLE_USER"))));
+    }
+
+    @Test
+    void nullLine_ReportedAsMalformed() throws Exception {
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(Set.of());
+
+        List<UserImportResult> results = importUsers("""
+                null
+                {"username":"dave","password":"password123"}
+                """);
+
+        assertThat(results).extracting(UserImportResult::getStatus).containsExactly(
+                UserImportResult.Status.INVALID, UserImportResult.Status.CREATED);
+        assertThat(results.get(0).getError()).isEqualTo("Malformed JSON");
+    }
+
+    private List<UserImportResult> importUsers(String ndjson) throws Exception {
+        UserImportService service = new UserImportService(userRepository, passwordEncoder,
+                TransactionOperations.withoutTransaction(), objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(service, "chunkSize", 100);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        service.importUsers(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), output);
+        return objectMapper.readerFor(UserImportResult.class)
+                .<UserImportResult>readValues(output.toByteArray())
+                .readAll();
+    }
+}
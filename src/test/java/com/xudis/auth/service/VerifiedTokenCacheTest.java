@@ -0,0 +1,183 @@
+package com.xudis.auth.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.xudis.auth.entity.SigningKey;
+import com.xudis.auth.repository.SigningKeyRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The verified-token cache in front of signature verification, against an in-process Redis (jedis-mock) and an
+ * in-memory signing_keys table.
+ */
+class VerifiedTokenCacheTest {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+    private static SigningKeyRing signingKeyRing;
+
+    private final Authentication authentication = UsernamePasswordAuthenticationToken.authenticated(
+            "alice", null, AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+    @BeforeAll
+    static void startRedis() throws Exception {
+        redisServer = RedisServer.newRedisServer(0);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(redisServer.getHost(), redisServer.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+
+        Map<String, SigningKey> table = new ConcurrentHashMap<>();
+        SigningKeyRepository repository = mock(SigningKeyRepository.class);
+        when(repository.findAll()).thenAnswer(invocation -> List.copyOf(table.values()));
+        when(repository.findPublished(any())).thenAnswer(invocation -> List.copyOf(table.values()));
+        when(repository.save(any())).thenAnswer(invocation -> {
+            SigningKey key = invocation.getArgument(0);
+            table.put(key.getKid(), key);
+            return key;
+        });
+        signingKeyRing = new SigningKeyRing(repository, TransactionOperations.withoutTransaction());
+        ReflectionTestUtils.setField(signingKeyRing, "signingAlgorithm", JWSAlgorithm.RS256.getName());
+        ReflectionTestUtils.setField(signingKeyRing, "algorithms", new ArrayList<String>());
+        ReflectionTestUtils.setField(signingKeyRing, "rotationInterval", Duration.ofDays(7));
+        ReflectionTestUtils.setField(signingKeyRing, "gracePeriod", Duration.ofDays(1));
+        ReflectionTestUtils.setField(signingKeyRing, "minReloadInterval", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(signingKeyRing, "refreshIntervalMs", 60000L);
+        ReflectionTestUtils.setField(signingKeyRing, "metadataMaxAge", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(signingKeyRing, "encryptionKey", "");
+        signingKeyRing.init();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void validateToken_RepeatedToken_VerifiedOnce() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JwtTokenService service = jwtTokenService(meterRegistry, 3600L);
+        try {
+            String token = service.generateAccessToken(authentication);
+
+            assertThat(service.validateToken(token)).isTrue();
+            assertThat(service.validateToken(token)).isTrue();
+            assertThat(verifications(meterRegistry)).isEqualTo(1);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void validateToken_CachedTokenExpires_Rejected() throws Exception {
+        JwtTokenService service = jwtTokenService(new SimpleMeterRegistry(), 1L);
+        try {
+            String token = service.generateAccessToken(authentication);
+            assertThat(service.validateToken(token)).isTrue();
+
+            // exp is in whole seconds, at most one second from issue
+            Thread.sleep(1100);
+
+            assertThat(service.validateToken(token)).isFalse();
+            assertThat(service.introspectAll(List.of(token)).get(0).isActive()).isFalse();
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void validateToken_CachedTokenBlacklistedElsewhere_Rejected() {
+        JwtTokenService service = jwtTokenService(new SimpleMeterRegistry(), 3600L);
+        JwtTokenService otherNode = jwtTokenService(new SimpleMeterRegistry(), 3600L);
+        try {
+            String token = service.generateAccessToken(authentication);
+            assertThat(service.validateToken(token)).isTrue();
+
+            // The logout lands on another node; this one keeps the verified claims cached
+            assertThat(otherNode.blacklistToken(token)).isEqualTo("alice");
+
+            assertThat(service.validateToken(token)).isFalse();
+            assertThat(service.isTokenBlacklisted(token)).isTrue();
+            assertThat(service.introspectAll(List.of(token)).get(0).isActive()).isFalse();
+        } finally {
+            service.shutdown();
+            otherNode.shutdown();
+        }
+    }
+
+    @Test
+    void validateToken_TamperedToken_MissesCache() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JwtTokenService service = jwtTokenService(meterRegistry, 3600L);
+        try {
+            String token = service.generateAccessToken(authentication);
+            assertThat(service.validateToken(token)).isTrue();
+
+            String[] parts = token.split("\\.");
+            String tamperedSignature = parts[0] + "." + parts[1] + "." + flipChar(parts[2]);
+            String tamperedPayload = parts[0] + "." + flipChar(parts[1]) + "." + parts[2];
+
+            assertThat(service.validateToken(tamperedSignature)).isFalse();
+            assertThat(service.validateToken(tamperedPayload)).isFalse();
+            // Both went through signature verification instead of hitting the entry of the original
+            assertThat(verifications(meterRegistry)).isEqualTo(3);
+            assertThat(service.validateToken(token)).isTrue();
+            assertThat(verifications(meterRegistry)).isEqualTo(3);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static long verifications(MeterRegistry meterRegistry) {
+        Timer timer = meterRegistry.find("auth.jwt.verify").timer();
+        return timer != null ? timer.count() : 0;
+    }
+
+    // A character inside the segment, so all six bits it encodes end up in the decoded bytes
+    private static String flipChar(String segment) {
+        int i = segment.length() / 2;
+        char replacement = segment.charAt(i) == 'A' ? 'B' : 'A';
+        return segment.substring(0, i) + replacement + segment.substring(i + 1);
+    }
+
+    // The Bloom filter is never built, so every blacklist check goes to Redis
+    private static JwtTokenService jwtTokenService(MeterRegistry meterRegistry, long tokenValiditySeconds) {
+        JwtTokenService service = new JwtTokenService(redisTemplate, new TokenBlacklistFilter(redisTemplate),
+                signingKeyRing, meterRegistry);
+        ReflectionTestUtils.setField(service, "issuer", "http://localhost:9000");
+        ReflectionTestUtils.setField(service, "tokenValiditySeconds", tokenValiditySeconds);
+        ReflectionTestUtils.setField(service, "verifiedTokenCacheMaximumSize", 100L);
+        ReflectionTestUtils.setField(service, "introspectionThreads", 2);
+        ReflectionTestUtils.setField(service, "introspectionQueueCapacity", 10);
+        ReflectionTestUtils.setField(service, "introspectionMaxBatchSize", 100);
+        service.init();
+        return service;
+    }
+}
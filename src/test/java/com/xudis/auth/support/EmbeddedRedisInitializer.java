@@ -0,0 +1,46 @@
+package com.xudis.auth.support;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Starts an in-process Redis (jedis-mock, which also runs Lua scripts) for the application context and points
+ * {@code spring.data.redis.*} at it. The server stops when the context closes.
+ */
+public class EmbeddedRedisInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    @Override
+    public void initialize(ConfigurableApplicationContext applicationContext) {
+        RedisServer redisServer;
+        try {
+            redisServer = RedisServer.newRedisServer(0);
+            redisServer.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start embedded Redis", e);
+        }
+
+        Map<String, Object> properties = Map.of(
+                "spring.data.redis.host", redisServer.getHost(),
+                "spring.data.redis.port", redisServer.getBindPort(),
+                "spring.data.redis.password", "");
+        applicationContext.getEnvironment().getPropertySources()
+                .addFirst(new MapPropertySource("embeddedRedis", properties));
+
+        applicationContext.addApplicationListener(event -> {
+            if (event instanceof ContextClosedEvent) {
+                try {
+                    redisServer.stop();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+}